@@ -21,7 +21,10 @@ package de.markusbordihn.ecostackmanager.commands.manager;
 
 import com.mojang.brigadier.CommandDispatcher;
 import de.markusbordihn.ecostackmanager.Constants;
+import de.markusbordihn.ecostackmanager.server.commands.AdaptiveCommand;
 import de.markusbordihn.ecostackmanager.server.commands.DebugCommand;
+import de.markusbordihn.ecostackmanager.server.commands.StatsCommand;
+import de.markusbordihn.ecostackmanager.server.commands.TraceCommand;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
 import org.apache.logging.log4j.LogManager;
@@ -41,6 +44,10 @@ public class CommandManager {
         Constants.MOD_COMMAND,
         Constants.MOD_NAME);
     commandDispatcher.register(
-        Commands.literal(Constants.MOD_COMMAND).then(DebugCommand.register()));
+        Commands.literal(Constants.MOD_COMMAND)
+            .then(AdaptiveCommand.register())
+            .then(DebugCommand.register())
+            .then(StatsCommand.register())
+            .then(TraceCommand.register()));
   }
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.config;
+
+import java.io.File;
+import java.util.Properties;
+
+public class AdaptiveControllerConfig extends Config {
+
+  public static final String CONFIG_FILE_NAME = "adaptive_controller.cfg";
+  public static final String CONFIG_FILE_HEADER = "Adaptive Controller Configuration";
+
+  public final boolean enabled;
+  public final int adjustmentInterval;
+  public final int highTickTime;
+  public final int lowTickTime;
+  public final int maxItemCollectRadius;
+  public final int maxExperienceOrbCollectRadius;
+  public final int minItemLimitPercentage;
+  public final int maxVerificationEntriesPerTick;
+
+  AdaptiveControllerConfig(Properties properties) {
+    // Config entries
+    enabled = parseConfigValue(properties, "enabled", false);
+    adjustmentInterval = parseConfigValue(properties, "adjustment_interval", 20);
+    highTickTime = parseConfigValue(properties, "high_tick_time", 45);
+    lowTickTime = parseConfigValue(properties, "low_tick_time", 25);
+    maxItemCollectRadius = parseConfigValue(properties, "max_item_collect_radius", 6);
+    maxExperienceOrbCollectRadius =
+        parseConfigValue(properties, "max_experience_orb_collect_radius", 8);
+    minItemLimitPercentage = parseConfigValue(properties, "min_item_limit_percentage", 50);
+    maxVerificationEntriesPerTick =
+        parseConfigValue(properties, "max_verification_entries_per_tick", 256);
+  }
+
+  public static AdaptiveControllerConfig get() {
+    return ConfigSnapshot.get().adaptiveControllerConfig;
+  }
+
+  public static void registerConfig() {
+    registerConfigFile(CONFIG_FILE_NAME, CONFIG_FILE_HEADER);
+  }
+
+  public static AdaptiveControllerConfig parseConfigFile() {
+    File configFile = getConfigFile(CONFIG_FILE_NAME);
+    Properties properties = readConfigFile(configFile);
+    Properties unmodifiedProperties = (Properties) properties.clone();
+    AdaptiveControllerConfig adaptiveControllerConfig = new AdaptiveControllerConfig(properties);
+
+    // Update config file if needed
+    updateConfigFileIfChanged(configFile, CONFIG_FILE_HEADER, properties, unmodifiedProperties);
+    return adaptiveControllerConfig;
+  }
+}
@@ -20,13 +20,17 @@
 package de.markusbordihn.ecostackmanager.config;
 
 import de.markusbordihn.ecostackmanager.Constants;
+import de.markusbordihn.ecostackmanager.tracker.MergeTargetSelection;
 import java.io.File;
 import java.io.FileWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.function.Function;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -52,6 +56,17 @@ public class Config {
     // Register configuration files
     ExperienceOrbConfig.registerConfig();
     ItemEntityConfig.registerConfig();
+    AdaptiveControllerConfig.registerConfig();
+    MetricsConfig.registerConfig();
+
+    // Parse configuration files and reload them on changes.
+    ConfigSnapshot.load();
+    ConfigReloader.start(getConfigDirectory());
+  }
+
+  public static void reload() {
+    ConfigSnapshot configSnapshot = ConfigSnapshot.load();
+    log.info("{} Reloaded configuration version {}", LOG_PREFIX, configSnapshot.version);
   }
 
   public static void registerConfigFile(
@@ -91,7 +106,7 @@ public class Config {
     return null;
   }
 
-  private static Path getConfigDirectory() {
+  public static Path getConfigDirectory() {
     Path resultPath = null;
     try {
       resultPath = Files.createDirectories(configPath);
@@ -153,6 +168,15 @@ public class Config {
     return defaultValue;
   }
 
+  protected static String parseConfigValue(
+      final Properties properties, final String key, final String defaultValue) {
+    if (properties.containsKey(key)) {
+      return properties.getProperty(key).trim();
+    }
+    properties.setProperty(key, defaultValue);
+    return defaultValue;
+  }
+
   protected static Set<String> parseConfigValue(
       final Properties properties, final String key, final Set<String> defaultValue) {
     if (properties.containsKey(key)) {
@@ -166,4 +190,82 @@ public class Config {
     properties.setProperty(key, String.join(",", defaultValue));
     return defaultValue;
   }
+
+  protected static MergeTargetSelection parseConfigValue(
+      final Properties properties, final String key, final MergeTargetSelection defaultValue) {
+    if (properties.containsKey(key)) {
+      MergeTargetSelection value = MergeTargetSelection.fromName(properties.getProperty(key));
+      if (value != null) {
+        return value;
+      }
+      log.error(
+          "{} Unknown merge target selection {} for key {}",
+          LOG_PREFIX,
+          properties.getProperty(key),
+          key);
+    }
+    properties.setProperty(key, defaultValue.getName());
+    return defaultValue;
+  }
+
+  protected static <T> Map<String, T> parseDimensionConfigs(
+      final Properties properties, final Function<Properties, T> configFactory) {
+    return parseDimensionConfigs(properties, configFactory, Set.of());
+  }
+
+  protected static <T> Map<String, T> parseDimensionConfigs(
+      final Properties properties,
+      final Function<Properties, T> configFactory,
+      final Set<String> sharedKeys) {
+    // Dimension overrides are using the "<namespace>/<path>.<key>" format, because ":" is a key
+    // separator in properties files, e.g. "minecraft/the_nether.collect_radius=6".
+    Properties globalProperties = new Properties();
+    Map<String, Properties> overrideProperties = new HashMap<>();
+    for (String key : properties.stringPropertyNames()) {
+      int namespaceSeparator = key.indexOf('/');
+      int keySeparator = key.lastIndexOf('.');
+      if (namespaceSeparator <= 0 || keySeparator <= namespaceSeparator + 1) {
+        globalProperties.setProperty(key, properties.getProperty(key));
+        continue;
+      }
+      String dimension =
+          key.substring(0, namespaceSeparator)
+              + ":"
+              + key.substring(namespaceSeparator + 1, keySeparator);
+      overrideProperties
+          .computeIfAbsent(dimension, k -> new Properties())
+          .setProperty(key.substring(keySeparator + 1), properties.getProperty(key));
+    }
+    if (overrideProperties.isEmpty()) {
+      return Map.of();
+    }
+
+    // Each dimension gets a complete config with the overrides on top of the global entries.
+    Properties defaultProperties = new Properties();
+    configFactory.apply(defaultProperties);
+    Map<String, T> dimensionConfigs = new HashMap<>();
+    overrideProperties.forEach(
+        (dimension, dimensionOverrides) -> {
+          Properties dimensionProperties = (Properties) globalProperties.clone();
+          for (String key : dimensionOverrides.stringPropertyNames()) {
+            if (!defaultProperties.containsKey(key)) {
+              log.warn("{} Ignoring unknown key {} for dimension {}", LOG_PREFIX, key, dimension);
+              continue;
+            }
+            if (sharedKeys.contains(key)) {
+              log.warn(
+                  "{} Ignoring key {} for dimension {}, which is shared by all dimensions",
+                  LOG_PREFIX,
+                  key,
+                  dimension);
+              continue;
+            }
+            dimensionProperties.setProperty(key, dimensionOverrides.getProperty(key));
+          }
+          log.info(
+              "{} Using overrides for dimension {}: {}", LOG_PREFIX, dimension, dimensionOverrides);
+          dimensionConfigs.put(dimension, configFactory.apply(dimensionProperties));
+        });
+    return dimensionConfigs;
+  }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.config;
+
+import de.markusbordihn.ecostackmanager.Constants;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class ConfigReloader implements Runnable {
+
+  private static final Logger log = LogManager.getLogger(Constants.LOG_NAME);
+  private static final String LOG_PREFIX = "[Config Reloader]";
+
+  // Editors are often writing a file in several steps, so that changes are collected for a moment.
+  private static final long SETTLE_TIME_MILLIS = 500;
+
+  private static Thread reloaderThread = null;
+
+  private final Path configDirectory;
+
+  private ConfigReloader(Path configDirectory) {
+    this.configDirectory = configDirectory;
+  }
+
+  public static synchronized void start(Path configDirectory) {
+    if (configDirectory == null || reloaderThread != null) {
+      return;
+    }
+    reloaderThread =
+        new Thread(new ConfigReloader(configDirectory), Constants.MOD_NAME + " Config Reloader");
+    reloaderThread.setDaemon(true);
+    reloaderThread.start();
+  }
+
+  private static boolean isConfigFileEvent(WatchKey watchKey) {
+    boolean result = false;
+    for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+      if (watchEvent.context() instanceof Path path && path.toString().endsWith(".cfg")) {
+        result = true;
+      }
+    }
+    watchKey.reset();
+    return result;
+  }
+
+  @Override
+  public void run() {
+    try (WatchService watchService = this.configDirectory.getFileSystem().newWatchService()) {
+      this.configDirectory.register(
+          watchService,
+          StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY);
+      log.info("{} Watching {} for changes", LOG_PREFIX, this.configDirectory);
+      while (!Thread.currentThread().isInterrupted()) {
+        if (!isConfigFileEvent(watchService.take())) {
+          continue;
+        }
+
+        // Collect further changes, before the configuration is reloaded once.
+        WatchKey watchKey;
+        while ((watchKey = watchService.poll(SETTLE_TIME_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          isConfigFileEvent(watchKey);
+        }
+        Config.reload();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException | RuntimeException e) {
+      log.error("{} Unable to watch {} for changes: {}", LOG_PREFIX, this.configDirectory, e);
+    }
+  }
+}
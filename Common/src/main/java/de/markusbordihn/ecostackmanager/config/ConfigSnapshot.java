@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.config;
+
+import java.util.Properties;
+
+public final class ConfigSnapshot {
+
+  // All configuration values are published together through a single volatile reference, so that
+  // readers always see a consistent set of values, even while the configuration is reloaded.
+  private static volatile ConfigSnapshot current =
+      new ConfigSnapshot(
+          new ExperienceOrbConfig(new Properties()),
+          new ItemEntityConfig(new Properties()),
+          new AdaptiveControllerConfig(new Properties()),
+          new MetricsConfig(new Properties()),
+          0);
+
+  public final ExperienceOrbConfig experienceOrbConfig;
+  public final ItemEntityConfig itemEntityConfig;
+  public final AdaptiveControllerConfig adaptiveControllerConfig;
+  public final MetricsConfig metricsConfig;
+  public final int version;
+
+  private ConfigSnapshot(
+      ExperienceOrbConfig experienceOrbConfig,
+      ItemEntityConfig itemEntityConfig,
+      AdaptiveControllerConfig adaptiveControllerConfig,
+      MetricsConfig metricsConfig,
+      int version) {
+    this.experienceOrbConfig = experienceOrbConfig;
+    this.itemEntityConfig = itemEntityConfig;
+    this.adaptiveControllerConfig = adaptiveControllerConfig;
+    this.metricsConfig = metricsConfig;
+    this.version = version;
+  }
+
+  public static ConfigSnapshot get() {
+    return current;
+  }
+
+  static synchronized ConfigSnapshot load() {
+    current =
+        new ConfigSnapshot(
+            ExperienceOrbConfig.parseConfigFile(),
+            ItemEntityConfig.parseConfigFile(),
+            AdaptiveControllerConfig.parseConfigFile(),
+            MetricsConfig.parseConfigFile(),
+            current.version + 1);
+    return current;
+  }
+}
@@ -19,32 +19,68 @@
 
 package de.markusbordihn.ecostackmanager.config;
 
+import de.markusbordihn.ecostackmanager.tracker.MergeTargetSelection;
 import java.io.File;
+import java.util.Map;
 import java.util.Properties;
 
 public class ExperienceOrbConfig extends Config {
   public static final String CONFIG_FILE_NAME = "experience_orb.cfg";
   public static final String CONFIG_FILE_HEADER = "Experience Orb Configuration";
 
-  public static int collectRadius = 4;
-  public static boolean movePositionToLastDrop = false;
+  public final int collectRadius;
+  public final int directDeliveryDensity;
+  public final int directDeliveryRange;
+  public final int maxMergeCandidates;
+  public final int maxNumberOfExperienceOrbsPerChunk;
+  public final int maxNumberOfExperienceOrbsPerWorld;
+  public final boolean mergeByCount;
+  public final MergeTargetSelection mergeTargetSelection;
+  public final boolean movePositionToLastDrop;
+  public final int verificationEntriesPerTick;
+
+  private final Map<String, ExperienceOrbConfig> dimensionConfigs;
+
+  ExperienceOrbConfig(Properties properties) {
+    // Config entries
+    collectRadius = parseConfigValue(properties, "collect_radius", 4);
+    directDeliveryDensity = parseConfigValue(properties, "direct_delivery_density", 0);
+    directDeliveryRange = parseConfigValue(properties, "direct_delivery_range", 8);
+    maxMergeCandidates = parseConfigValue(properties, "max_merge_candidates", 8);
+    maxNumberOfExperienceOrbsPerChunk =
+        parseConfigValue(properties, "max_number_of_experience_orbs_per_chunk", 0);
+    maxNumberOfExperienceOrbsPerWorld =
+        parseConfigValue(properties, "max_number_of_experience_orbs_per_world", 0);
+    mergeByCount = parseConfigValue(properties, "merge_by_count", true);
+    mergeTargetSelection =
+        parseConfigValue(properties, "merge_target_selection", MergeTargetSelection.NEAREST);
+    movePositionToLastDrop = parseConfigValue(properties, "move_position_to_last_drop", false);
+    verificationEntriesPerTick = parseConfigValue(properties, "verification_entries_per_tick", 32);
+
+    // Dimension overrides
+    dimensionConfigs = parseDimensionConfigs(properties, ExperienceOrbConfig::new);
+  }
+
+  public static ExperienceOrbConfig get() {
+    return ConfigSnapshot.get().experienceOrbConfig;
+  }
+
+  public ExperienceOrbConfig getDimensionConfig(final String dimension) {
+    return this.dimensionConfigs.getOrDefault(dimension, this);
+  }
 
   public static void registerConfig() {
     registerConfigFile(CONFIG_FILE_NAME, CONFIG_FILE_HEADER);
-    parseConfigFile();
   }
 
-  public static void parseConfigFile() {
+  public static ExperienceOrbConfig parseConfigFile() {
     File configFile = getConfigFile(CONFIG_FILE_NAME);
     Properties properties = readConfigFile(configFile);
     Properties unmodifiedProperties = (Properties) properties.clone();
-
-    // Config entries
-    collectRadius = parseConfigValue(properties, "collect_radius", collectRadius);
-    movePositionToLastDrop =
-        parseConfigValue(properties, "move_position_to_last_drop", movePositionToLastDrop);
+    ExperienceOrbConfig experienceOrbConfig = new ExperienceOrbConfig(properties);
 
     // Update config file if needed
     updateConfigFileIfChanged(configFile, CONFIG_FILE_HEADER, properties, unmodifiedProperties);
+    return experienceOrbConfig;
   }
 }
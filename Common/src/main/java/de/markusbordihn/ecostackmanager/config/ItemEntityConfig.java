@@ -19,7 +19,10 @@
 
 package de.markusbordihn.ecostackmanager.config;
 
+import de.markusbordihn.ecostackmanager.tracker.EvictionStrategy;
+import de.markusbordihn.ecostackmanager.tracker.MergeTargetSelection;
 import java.io.File;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
@@ -27,42 +30,98 @@ public class ItemEntityConfig extends Config {
 
   public static final String CONFIG_FILE_NAME = "item_entity.cfg";
   public static final String CONFIG_FILE_HEADER = "Item Entity Configuration";
+  private static final Set<String> SHARED_CONFIG_KEYS =
+      Set.of("allow_list", "deny_list", "remerge_budget_micros");
 
-  public static Set<String> allowList = Set.of();
-  public static Set<String> denyList = Set.of("minecraft:diamond", "minecraft:diamond_block");
+  public final Set<String> allowList;
+  public final Set<String> denyList;
 
-  public static int collectRadius = 3;
-  public static int maxNumberOfItemsPerWorld = 128;
-  public static int maxNumberOfItemsPerType = 32;
-  public static int maxStackSize = 64;
-  public static boolean movePositionToLastDrop = false;
-  public static int verificationCycle = 64;
+  public final boolean batchMerge;
+  public final int collectRadius;
+  public final boolean consolidatePartialStacks;
+  public final EvictionStrategy evictionStrategy;
+  public final int maxMergeCandidates;
+  public final int maxNumberOfItemsPerChunk;
+  public final int maxNumberOfItemsPerRegion;
+  public final int maxNumberOfItemsPerWorld;
+  public final int maxNumberOfItemsPerType;
+  public final int maxStackSize;
+  public final MergeTargetSelection mergeTargetSelection;
+  public final boolean movePositionToLastDrop;
+  public final int remergeBudgetMicros;
+  public final int verificationEntriesPerTick;
+  public final boolean virtualStacking;
+
+  private final Map<String, ItemEntityConfig> dimensionConfigs;
+
+  ItemEntityConfig(Properties properties) {
+    // Config entries
+    allowList = parseConfigValue(properties, "allow_list", Set.of());
+    denyList =
+        parseConfigValue(
+            properties, "deny_list", Set.of("minecraft:diamond", "minecraft:diamond_block"));
+
+    batchMerge = parseConfigValue(properties, "batch_merge", false);
+    // Item entities which could both see the sky are merged regardless of their y position. The
+    // sky visibility is cached per block column and invalidated by block updates on Forge, but on
+    // Fabric only after one second, because there is no block update event.
+    collectRadius = parseConfigValue(properties, "collect_radius", 3);
+    consolidatePartialStacks = parseConfigValue(properties, "consolidate_partial_stacks", false);
+    evictionStrategy =
+        parseEvictionStrategy(properties, "eviction_strategy", EvictionStrategy.OLDEST);
+    maxMergeCandidates = parseConfigValue(properties, "max_merge_candidates", 8);
+    maxNumberOfItemsPerChunk = parseConfigValue(properties, "max_number_of_items_per_chunk", 0);
+    maxNumberOfItemsPerRegion = parseConfigValue(properties, "max_number_of_items_per_region", 0);
+    maxNumberOfItemsPerWorld = parseConfigValue(properties, "max_number_of_items_per_world", 128);
+    maxNumberOfItemsPerType = parseConfigValue(properties, "max_number_of_items_per_type", 32);
+    maxStackSize = parseConfigValue(properties, "max_stack_size", 64);
+    mergeTargetSelection =
+        parseConfigValue(properties, "merge_target_selection", MergeTargetSelection.NEAREST);
+    movePositionToLastDrop = parseConfigValue(properties, "move_position_to_last_drop", false);
+    remergeBudgetMicros = parseConfigValue(properties, "remerge_budget_micros", 250);
+    verificationEntriesPerTick = parseConfigValue(properties, "verification_entries_per_tick", 32);
+
+    virtualStacking = parseConfigValue(properties, "virtual_stacking", false);
+
+    // Dimension overrides, without the item policy and the remerge budget, which are shared by all
+    // dimensions.
+    dimensionConfigs =
+        parseDimensionConfigs(properties, ItemEntityConfig::new, SHARED_CONFIG_KEYS);
+  }
+
+  public static ItemEntityConfig get() {
+    return ConfigSnapshot.get().itemEntityConfig;
+  }
+
+  public ItemEntityConfig getDimensionConfig(final String dimension) {
+    return this.dimensionConfigs.getOrDefault(dimension, this);
+  }
 
   public static void registerConfig() {
     registerConfigFile(CONFIG_FILE_NAME, CONFIG_FILE_HEADER);
-    parseConfigFile();
   }
 
-  public static void parseConfigFile() {
+  public static ItemEntityConfig parseConfigFile() {
     File configFile = getConfigFile(CONFIG_FILE_NAME);
     Properties properties = readConfigFile(configFile);
     Properties unmodifiedProperties = (Properties) properties.clone();
-
-    // Config entries
-    allowList = parseConfigValue(properties, "allow_list", allowList);
-    denyList = parseConfigValue(properties, "deny_list", denyList);
-
-    collectRadius = parseConfigValue(properties, "collect_radius", collectRadius);
-    maxNumberOfItemsPerWorld =
-        parseConfigValue(properties, "max_number_of_items_per_world", maxNumberOfItemsPerWorld);
-    maxNumberOfItemsPerType =
-        parseConfigValue(properties, "max_number_of_items_per_type", maxNumberOfItemsPerType);
-    maxStackSize = parseConfigValue(properties, "max_stack_size", maxStackSize);
-    movePositionToLastDrop =
-        parseConfigValue(properties, "move_position_to_last_drop", movePositionToLastDrop);
-    verificationCycle = parseConfigValue(properties, "verification_cycle", verificationCycle);
+    ItemEntityConfig itemEntityConfig = new ItemEntityConfig(properties);
 
     // Update config file if needed
     updateConfigFileIfChanged(configFile, CONFIG_FILE_HEADER, properties, unmodifiedProperties);
+    return itemEntityConfig;
+  }
+
+  private static EvictionStrategy parseEvictionStrategy(
+      final Properties properties, final String key, final EvictionStrategy defaultValue) {
+    String value = parseConfigValue(properties, key, defaultValue.getName());
+    EvictionStrategy result = EvictionStrategy.fromName(value);
+    if (result == null) {
+      log.error(
+          "[Config] Unknown eviction strategy {} for key {}, using {}", value, key, defaultValue);
+      properties.setProperty(key, defaultValue.getName());
+      return defaultValue;
+    }
+    return result;
   }
 }
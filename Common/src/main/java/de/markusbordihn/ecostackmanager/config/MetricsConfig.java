@@ -0,0 +1,61 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.config;
+
+import java.io.File;
+import java.util.Properties;
+
+public class MetricsConfig extends Config {
+
+  public static final String CONFIG_FILE_NAME = "metrics.cfg";
+  public static final String CONFIG_FILE_HEADER = "Metrics Configuration";
+
+  public final int exportInterval;
+  public final String exportDirectory;
+  public final int exportMaxFileSize;
+  public final int exportMaxFiles;
+
+  MetricsConfig(Properties properties) {
+    // Config entries
+    exportInterval = parseConfigValue(properties, "export_interval", 0);
+    exportDirectory = parseConfigValue(properties, "export_directory", "");
+    exportMaxFileSize = parseConfigValue(properties, "export_max_file_size", 1024);
+    exportMaxFiles = parseConfigValue(properties, "export_max_files", 5);
+  }
+
+  public static MetricsConfig get() {
+    return ConfigSnapshot.get().metricsConfig;
+  }
+
+  public static void registerConfig() {
+    registerConfigFile(CONFIG_FILE_NAME, CONFIG_FILE_HEADER);
+  }
+
+  public static MetricsConfig parseConfigFile() {
+    File configFile = getConfigFile(CONFIG_FILE_NAME);
+    Properties properties = readConfigFile(configFile);
+    Properties unmodifiedProperties = (Properties) properties.clone();
+    MetricsConfig metricsConfig = new MetricsConfig(properties);
+
+    // Update config file if needed
+    updateConfigFileIfChanged(configFile, CONFIG_FILE_HEADER, properties, unmodifiedProperties);
+    return metricsConfig;
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.debug;
+
+import de.markusbordihn.ecostackmanager.Constants;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.level.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public final class EventTracer {
+
+  private static final Logger log = LogManager.getLogger(Constants.LOG_NAME);
+  private static final String LOG_PREFIX = "[Event Tracer]";
+
+  private static final DateTimeFormatter FILE_NAME_FORMATTER =
+      DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+  // The events are stored in preallocated primitive arrays, which are overwritten in a ring, so
+  // that recording an event does not allocate, box or format anything. Events are only recorded
+  // and dumped on the server thread.
+  private static final int CAPACITY = 1 << 14;
+  private static final int MASK = CAPACITY - 1;
+  private static final byte[] events = new byte[CAPACITY];
+  private static final int[] entityIds = new int[CAPACITY];
+  private static final short[] levelIndexes = new short[CAPACITY];
+  private static final float[] positionsX = new float[CAPACITY];
+  private static final float[] positionsY = new float[CAPACITY];
+  private static final float[] positionsZ = new float[CAPACITY];
+  private static final int[] counts = new int[CAPACITY];
+  private static final long[] nanoTimes = new long[CAPACITY];
+
+  // Resource keys of the same dimension are interned, so that they are compared by identity. Level
+  // indexes are stored as unsigned short and further levels are recorded as "other" level.
+  private static final List<ResourceKey<Level>> levelKeys = new ArrayList<>();
+  private static final int OTHER_LEVEL_INDEX = 0xFFFF;
+
+  private static long position = 0;
+  private static ResourceKey<Level> lastLevelKey = null;
+  private static short lastLevelIndex = 0;
+
+  private EventTracer() {}
+
+  public static void record(final TraceEvent event, final Entity entity, final int count) {
+    int index = (int) (position++ & MASK);
+    events[index] = (byte) event.ordinal();
+    entityIds[index] = entity.getId();
+    levelIndexes[index] = getLevelIndex(entity.level.dimension());
+    positionsX[index] = (float) entity.getX();
+    positionsY[index] = (float) entity.getY();
+    positionsZ[index] = (float) entity.getZ();
+    counts[index] = count;
+    nanoTimes[index] = System.nanoTime();
+  }
+
+  private static short getLevelIndex(final ResourceKey<Level> levelKey) {
+    if (levelKey == lastLevelKey) {
+      return lastLevelIndex;
+    }
+    int levelIndex = levelKeys.indexOf(levelKey);
+    if (levelIndex < 0) {
+      if (levelKeys.size() < OTHER_LEVEL_INDEX) {
+        levelIndex = levelKeys.size();
+        levelKeys.add(levelKey);
+      } else {
+        levelIndex = OTHER_LEVEL_INDEX;
+      }
+    }
+    lastLevelKey = levelKey;
+    lastLevelIndex = (short) levelIndex;
+    return lastLevelIndex;
+  }
+
+  private static String getLevelName(final short levelIndex) {
+    int index = Short.toUnsignedInt(levelIndex);
+    return index < levelKeys.size() ? levelKeys.get(index).location().toString() : "other";
+  }
+
+  public static int size() {
+    return (int) Math.min(position, CAPACITY);
+  }
+
+  public static Path dump(final Path directory) throws IOException {
+    // Events are written from the oldest to the newest one, with the time relative to the dump.
+    Path traceFile =
+        directory.resolve("trace-" + LocalDateTime.now().format(FILE_NAME_FORMATTER) + ".csv");
+    long dumpNanoTime = System.nanoTime();
+    long start = Math.max(0, position - CAPACITY);
+    try (BufferedWriter writer = Files.newBufferedWriter(traceFile, StandardCharsets.UTF_8)) {
+      writer.write("nanos_before_dump,event,level,entity_id,x,y,z,count");
+      writer.newLine();
+      StringBuilder line = new StringBuilder(128);
+      for (long i = start; i < position; i++) {
+        int index = (int) (i & MASK);
+        line.setLength(0);
+        line.append(dumpNanoTime - nanoTimes[index])
+            .append(',')
+            .append(TraceEvent.byId(events[index]).getName())
+            .append(',')
+            .append(getLevelName(levelIndexes[index]))
+            .append(',')
+            .append(entityIds[index])
+            .append(',')
+            .append(positionsX[index])
+            .append(',')
+            .append(positionsY[index])
+            .append(',')
+            .append(positionsZ[index])
+            .append(',')
+            .append(counts[index]);
+        writer.write(line.toString());
+        writer.newLine();
+      }
+    }
+    log.info("{} Dumped {} events to {}", LOG_PREFIX, position - start, traceFile);
+    return traceFile;
+  }
+}
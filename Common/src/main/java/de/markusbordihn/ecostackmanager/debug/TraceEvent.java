@@ -0,0 +1,50 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.debug;
+
+import java.util.Locale;
+
+public enum TraceEvent {
+  ITEM_JOIN,
+  ITEM_LEAVE,
+  ITEM_MERGE,
+  ITEM_SPLIT,
+  ITEM_EVICT_CHUNK,
+  ITEM_EVICT_REGION,
+  ITEM_EVICT_WORLD,
+  ITEM_EVICT_TYPE,
+  EXPERIENCE_ORB_JOIN,
+  EXPERIENCE_ORB_LEAVE,
+  EXPERIENCE_ORB_MERGE,
+  EXPERIENCE_ORB_FOLD,
+  EXPERIENCE_ORB_DELIVER,
+  EXPERIENCE_ORB_GHOST;
+
+  // Cached copy, because values() creates a new array on every call.
+  private static final TraceEvent[] VALUES = values();
+
+  public static TraceEvent byId(final int id) {
+    return VALUES[id];
+  }
+
+  public String getName() {
+    return this.name().toLowerCase(Locale.ROOT);
+  }
+}
@@ -21,13 +21,18 @@ package de.markusbordihn.ecostackmanager.entity;
 
 import de.markusbordihn.ecostackmanager.Constants;
 import de.markusbordihn.ecostackmanager.config.ExperienceOrbConfig;
+import de.markusbordihn.ecostackmanager.debug.EventTracer;
+import de.markusbordihn.ecostackmanager.debug.TraceEvent;
+import de.markusbordihn.ecostackmanager.metrics.LevelMetrics;
+import de.markusbordihn.ecostackmanager.server.AdaptiveController;
+import de.markusbordihn.ecostackmanager.tracker.ExperienceOrbSectionIndex;
+import de.markusbordihn.ecostackmanager.tracker.LevelTracker;
+import de.markusbordihn.ecostackmanager.tracker.LevelTrackerManager;
+import de.markusbordihn.ecostackmanager.tracker.MergeTargetSelection;
 import de.markusbordihn.ecostackmanager.utils.ReflectionUtils;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.lang.invoke.VarHandle;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.ExperienceOrb;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -36,13 +41,58 @@ public class ExperienceOrbManager {
 
   private static final Logger log = LogManager.getLogger(Constants.LOG_NAME);
 
-  private static final Map<String, Set<ExperienceOrb>> levelExperienceOrbMap =
-      new ConcurrentHashMap<>();
+  // Overflowing experience orbs are folded into the nearest experience orb within this number of
+  // chunk sections.
+  private static final int FOLD_SECTION_RADIUS = 2;
 
-  private static boolean raiseExpectationErrorOnce = true;
+  // The value and count fields are resolved once, so that merges are not using any reflection
+  // lookup. The count is used by vanilla to cluster experience orbs with the same value.
+  private static final VarHandle experienceOrbValue =
+      ReflectionUtils.findVarHandle(
+          ExperienceOrb.class, int.class, "value", "amount", "field_6159", "f_20770_");
+  private static final VarHandle experienceOrbCount =
+      ReflectionUtils.findVarHandle(
+          ExperienceOrb.class, int.class, "count", "field_27009", "f_147072_");
+
+  private static long directlyDeliveredExperienceOrbs = 0;
+  private static long foldedExperienceOrbs = 0;
 
   private ExperienceOrbManager() {}
 
+  public static void registerAccessors() {
+    if (experienceOrbValue != null) {
+      log.info("Experience orb value accessor {} is available.", experienceOrbValue);
+    } else {
+      log.error(
+          "Unable to find the experience orb value field, experience orbs will only be moved "
+              + "closer together instead of being merged!");
+    }
+    if (experienceOrbCount != null) {
+      log.info("Experience orb count accessor {} is available.", experienceOrbCount);
+    } else {
+      log.warn(
+          "Unable to find the experience orb count field, experience orbs will be merged by their "
+              + "value only!");
+    }
+  }
+
+  public static int getCount(ExperienceOrb experienceOrb) {
+    return experienceOrbCount != null ? (int) experienceOrbCount.get(experienceOrb) : 1;
+  }
+
+  public static int getExperience(ExperienceOrb experienceOrb) {
+    // Total xp of all counted experience orbs.
+    return experienceOrb.getValue() * getCount(experienceOrb);
+  }
+
+  public static long getDirectlyDeliveredExperienceOrbs() {
+    return directlyDeliveredExperienceOrbs;
+  }
+
+  public static long getFoldedExperienceOrbs() {
+    return foldedExperienceOrbs;
+  }
+
   public static boolean handleExperienceOrbJoinWorldEvent(
       ExperienceOrb experienceOrb, ServerLevel serverLevel) {
 
@@ -51,84 +101,235 @@ public class ExperienceOrbManager {
       return false;
     }
 
-    // Get world name and ignore orb if it has 0 xp.
-    String levelName = serverLevel.dimension().location().toString();
+    // Ignore orb if it has 0 xp.
     if (experienceOrb.getValue() <= 0) {
-      log.debug(
-          "[Removed Ghost Experience Orb] {} with {} xp from {}.",
-          experienceOrb,
-          experienceOrb.getValue(),
-          levelName);
+      EventTracer.record(TraceEvent.EXPERIENCE_ORB_GHOST, experienceOrb, experienceOrb.getValue());
       experienceOrb.discard();
       return true;
+    }
+    EventTracer.record(TraceEvent.EXPERIENCE_ORB_JOIN, experienceOrb, getExperience(experienceOrb));
+
+    long startTime = System.nanoTime();
+    LevelTracker levelTracker = LevelTrackerManager.getLevelTracker(serverLevel);
+    ExperienceOrbSectionIndex experienceOrbSectionIndex =
+        levelTracker.getExperienceOrbSectionIndex();
+    ExperienceOrbConfig experienceOrbConfig = levelTracker.getExperienceOrbConfig();
+    LevelMetrics levelMetrics = levelTracker.getLevelMetrics();
+    levelMetrics.experienceOrbs.joins.increment();
+
+    // Deliver the xp directly to the nearest player, if there are already too many experience orbs,
+    // otherwise merge the experience orb, if radius is set, or track it within the limits.
+    boolean result;
+    if (experienceOrbConfig.directDeliveryDensity > 0
+        && handleExperienceOrbDirectDelivery(
+            experienceOrb, serverLevel, experienceOrbSectionIndex, experienceOrbConfig)) {
+      result = true;
+    } else if (AdaptiveController.getExperienceOrbCollectRadius(experienceOrbConfig) > 0
+        && handleExperienceOrbMerge(
+            experienceOrb, experienceOrbSectionIndex, experienceOrbConfig)) {
+      levelMetrics.experienceOrbs.merges.increment();
+      result = true;
     } else {
-      log.debug(
-          "Experience Orb {} with {} xp joined {}.",
-          experienceOrb,
-          experienceOrb.getValue(),
-          levelName);
+      experienceOrbSectionIndex.add(experienceOrb);
+      result =
+          handleExperienceOrbLimits(experienceOrb, experienceOrbSectionIndex, experienceOrbConfig);
+      if (result) {
+        levelMetrics.experienceOrbs.evictions.increment();
+      }
     }
+    levelMetrics.experienceOrbMergeCandidates.record(
+        experienceOrbSectionIndex.pollScannedMergeCandidates());
+    levelMetrics.experienceOrbJoinNanos.record(System.nanoTime() - startTime);
+    return result;
+  }
 
-    // Handle experience orb merge, if radius is set.
-    if (ExperienceOrbConfig.collectRadius > 0) {
-      return handleExperienceOrbMerge(experienceOrb, levelName);
+  public static boolean handleExperienceOrbDirectDelivery(
+      ExperienceOrb experienceOrb,
+      ServerLevel serverLevel,
+      ExperienceOrbSectionIndex experienceOrbSectionIndex,
+      ExperienceOrbConfig experienceOrbConfig) {
+    if (experienceOrbSectionIndex.countNearbyExperienceOrbs(experienceOrb)
+        < experienceOrbConfig.directDeliveryDensity) {
+      return false;
     }
 
-    return false;
+    // Find the nearest player within the direct delivery range.
+    ServerPlayer nearestServerPlayer = null;
+    double nearestDistance =
+        (double) experienceOrbConfig.directDeliveryRange * experienceOrbConfig.directDeliveryRange;
+    for (ServerPlayer serverPlayer : serverLevel.players()) {
+      double distance = serverPlayer.distanceToSqr(experienceOrb);
+      if (distance <= nearestDistance && serverPlayer.isAlive() && !serverPlayer.isSpectator()) {
+        nearestServerPlayer = serverPlayer;
+        nearestDistance = distance;
+      }
+    }
+    if (nearestServerPlayer == null) {
+      return false;
+    }
+
+    // Credit the xp of all counted experience orbs and cancel the spawn of the experience orb.
+    int count = getCount(experienceOrb);
+    EventTracer.record(
+        TraceEvent.EXPERIENCE_ORB_DELIVER, experienceOrb, experienceOrb.getValue() * count);
+    nearestServerPlayer.giveExperiencePoints(experienceOrb.getValue() * count);
+    experienceOrb.discard();
+    directlyDeliveredExperienceOrbs += count;
+    return true;
   }
 
   public static void handleExperienceOrbLeaveWorldEvent(
       ExperienceOrb experienceOrb, ServerLevel serverLevel) {
 
-    // Get level name and start processing of data
-    String levelName = serverLevel.dimension().location().toString();
-    log.debug(
-        "Experience Orb {} with {} xp left {}.",
-        experienceOrb,
-        experienceOrb.getValue(),
-        levelName);
+    EventTracer.record(
+        TraceEvent.EXPERIENCE_ORB_LEAVE, experienceOrb, getExperience(experienceOrb));
 
-    // Remove item from level type map.
-    Set<ExperienceOrb> experienceOrbWorldEntities = levelExperienceOrbMap.get(levelName);
-    if (experienceOrbWorldEntities != null) {
-      experienceOrbWorldEntities.remove(experienceOrb);
+    // Remove experience orb from level section index, if the level is not already unloaded.
+    LevelTracker levelTracker = LevelTrackerManager.findLevelTracker(serverLevel);
+    if (levelTracker != null) {
+      levelTracker.getExperienceOrbSectionIndex().remove(experienceOrb);
     }
   }
 
-  public static boolean handleExperienceOrbMerge(ExperienceOrb experienceOrb, String levelName) {
-    levelExperienceOrbMap.computeIfAbsent(levelName, k -> new LinkedHashSet<>());
-    Set<ExperienceOrb> experienceOrbWorldEntities = levelExperienceOrbMap.get(levelName);
-
+  public static boolean handleExperienceOrbMerge(
+      ExperienceOrb experienceOrb,
+      ExperienceOrbSectionIndex experienceOrbSectionIndex,
+      ExperienceOrbConfig experienceOrbConfig) {
     // Early exit if no experience orbs are available.
-    if (experienceOrbWorldEntities.isEmpty()) {
-      experienceOrbWorldEntities.add(experienceOrb);
+    if (experienceOrbSectionIndex.isEmpty()) {
       return false;
     }
 
-    // Get basic information about the experience orb and the surrounding area.
-    double x = experienceOrb.getX();
-    double y = experienceOrb.getY();
-    double z = experienceOrb.getZ();
-    int xStart = (int) x - ExperienceOrbConfig.collectRadius;
-    int yStart = (int) y - ExperienceOrbConfig.collectRadius;
-    int zStart = (int) z - ExperienceOrbConfig.collectRadius;
-    int xEnd = (int) x + ExperienceOrbConfig.collectRadius;
-    int yEnd = (int) y + ExperienceOrbConfig.collectRadius;
-    int zEnd = (int) z + ExperienceOrbConfig.collectRadius;
-
-    // Compare information with known items.
-    for (ExperienceOrb existingExperienceOrb : new HashSet<>(experienceOrbWorldEntities)) {
-      if (shouldMerge(
-          experienceOrb, existingExperienceOrb, xStart, yStart, zStart, xEnd, yEnd, zEnd)) {
-        mergeExperienceOrbs(experienceOrb, existingExperienceOrb, x, y, z);
-        return true;
-      }
+    // Cluster experience orbs with the same value by their count first, so that their size and
+    // value stays the same, and only sum up the values of different value classes.
+    ExperienceOrb existingExperienceOrb = null;
+    boolean mergeByCount = experienceOrbConfig.mergeByCount && experienceOrbCount != null;
+    if (mergeByCount) {
+      existingExperienceOrb =
+          findMergeCandidate(experienceOrbSectionIndex, experienceOrb, true, experienceOrbConfig);
+    }
+    if (existingExperienceOrb == null) {
+      existingExperienceOrb =
+          findMergeCandidate(experienceOrbSectionIndex, experienceOrb, false, experienceOrbConfig);
+    }
+    if (existingExperienceOrb != null) {
+      mergeExperienceOrbs(
+          experienceOrb,
+          existingExperienceOrb,
+          mergeByCount && existingExperienceOrb.getValue() == experienceOrb.getValue(),
+          experienceOrbConfig.movePositionToLastDrop,
+          experienceOrb.getX(),
+          experienceOrb.getY(),
+          experienceOrb.getZ());
+      experienceOrbSectionIndex.update(existingExperienceOrb);
+      EventTracer.record(
+          TraceEvent.EXPERIENCE_ORB_MERGE,
+          existingExperienceOrb,
+          getExperience(existingExperienceOrb));
+      return true;
     }
-
-    experienceOrbWorldEntities.add(experienceOrb);
     return false;
   }
 
+  public static boolean handleExperienceOrbLimits(
+      ExperienceOrb experienceOrb,
+      ExperienceOrbSectionIndex experienceOrbSectionIndex,
+      ExperienceOrbConfig experienceOrbConfig) {
+    // Experience orbs could only be folded, if one of the accessors is available.
+    boolean mergeByCount = experienceOrbConfig.mergeByCount && experienceOrbCount != null;
+    if (!mergeByCount && experienceOrbValue == null) {
+      return false;
+    }
+
+    // Check the limits per chunk and per world, which are both tracked by the section index.
+    int maxNumberOfExperienceOrbsPerChunk = experienceOrbConfig.maxNumberOfExperienceOrbsPerChunk;
+    int maxNumberOfExperienceOrbsPerWorld = experienceOrbConfig.maxNumberOfExperienceOrbsPerWorld;
+    int numberOfExperienceOrbsPerChunk = experienceOrbSectionIndex.getChunkSize(experienceOrb);
+    int numberOfExperienceOrbsPerWorld = experienceOrbSectionIndex.size();
+    if ((maxNumberOfExperienceOrbsPerChunk <= 0
+            || numberOfExperienceOrbsPerChunk <= maxNumberOfExperienceOrbsPerChunk)
+        && (maxNumberOfExperienceOrbsPerWorld <= 0
+            || numberOfExperienceOrbsPerWorld <= maxNumberOfExperienceOrbsPerWorld)) {
+      return false;
+    }
+
+    // Fold the overflowing experience orb into the nearest experience orb, so that no xp is lost.
+    int value = experienceOrb.getValue();
+    ExperienceOrb existingExperienceOrb =
+        experienceOrbSectionIndex.findNearest(
+            experienceOrb,
+            FOLD_SECTION_RADIUS,
+            candidateExperienceOrb ->
+                candidateExperienceOrb.isAlive()
+                    && ((mergeByCount && candidateExperienceOrb.getValue() == value)
+                        || (experienceOrbValue != null
+                            && getCount(candidateExperienceOrb) == 1)));
+    if (existingExperienceOrb == null) {
+      return false;
+    }
+    mergeExperienceOrbs(
+        experienceOrb,
+        existingExperienceOrb,
+        mergeByCount && existingExperienceOrb.getValue() == value,
+        false,
+        experienceOrb.getX(),
+        experienceOrb.getY(),
+        experienceOrb.getZ());
+    experienceOrbSectionIndex.remove(experienceOrb);
+    EventTracer.record(
+        TraceEvent.EXPERIENCE_ORB_FOLD,
+        existingExperienceOrb,
+        getExperience(existingExperienceOrb));
+    foldedExperienceOrbs++;
+    return true;
+  }
+
+  private static ExperienceOrb findMergeCandidate(
+      ExperienceOrbSectionIndex experienceOrbSectionIndex,
+      ExperienceOrb experienceOrb,
+      boolean sameValue,
+      ExperienceOrbConfig experienceOrbConfig) {
+    // Get basic information about the experience orb and the surrounding area.
+    int value = experienceOrb.getValue();
+    int collectRadius = AdaptiveController.getExperienceOrbCollectRadius(experienceOrbConfig);
+    int xStart = (int) experienceOrb.getX() - collectRadius;
+    int yStart = (int) experienceOrb.getY() - collectRadius;
+    int zStart = (int) experienceOrb.getZ() - collectRadius;
+    int xEnd = (int) experienceOrb.getX() + collectRadius;
+    int yEnd = (int) experienceOrb.getY() + collectRadius;
+    int zEnd = (int) experienceOrb.getZ() + collectRadius;
+
+    // Compare information with known experience orbs in the overlapping sections. The values are
+    // only summed up for single experience orbs, because the value applies to each counted orb.
+    MergeTargetSelection mergeTargetSelection = experienceOrbConfig.mergeTargetSelection;
+    return experienceOrbSectionIndex.findMergeCandidate(
+        xStart,
+        yStart,
+        zStart,
+        xEnd,
+        yEnd,
+        zEnd,
+        candidateExperienceOrb ->
+            (sameValue
+                    ? candidateExperienceOrb.getValue() == value
+                    : getCount(candidateExperienceOrb) == 1)
+                && shouldMerge(
+                    experienceOrb,
+                    candidateExperienceOrb,
+                    xStart,
+                    yStart,
+                    zStart,
+                    xEnd,
+                    yEnd,
+                    zEnd),
+        mergeTargetSelection.isScored()
+            ? candidateExperienceOrb ->
+                mergeTargetSelection.getScore(
+                    experienceOrb.distanceToSqr(candidateExperienceOrb), 0)
+            : null,
+        experienceOrbConfig.maxMergeCandidates);
+  }
+
   private static boolean shouldMerge(
       final ExperienceOrb experienceOrb,
       final ExperienceOrb existingExperienceOrb,
@@ -152,44 +353,36 @@ public class ExperienceOrbManager {
   private static void mergeExperienceOrbs(
       ExperienceOrb experienceOrb,
       ExperienceOrb existingExperienceOrb,
+      final boolean mergeByCount,
+      final boolean movePosition,
       final double x,
       final double y,
       final double z) {
-    // Combine experience orb values.
-    int newExperienceValue = existingExperienceOrb.getValue() + experienceOrb.getValue();
-    log.debug(
-        "[Merging Experience Orb] {} with {} and {} xp.",
-        experienceOrb,
-        existingExperienceOrb,
-        newExperienceValue);
-
-    // Merge experience orbs values and check if it was successful.
-    if (ReflectionUtils.changeIntValueField(
-        existingExperienceOrb,
-        new String[] {"value", "amount", "field_6159", "f_20770_"},
-        newExperienceValue)) {
+    // Combine experience orb counts for the same value or the values of different value classes.
+    int count = getCount(experienceOrb);
+    if (mergeByCount) {
+      int newExperienceCount = getCount(existingExperienceOrb) + count;
+      experienceOrbCount.set(existingExperienceOrb, newExperienceCount);
+    } else if (experienceOrbValue != null) {
+      int newExperienceValue = existingExperienceOrb.getValue() + experienceOrb.getValue() * count;
+      experienceOrbValue.set(existingExperienceOrb, newExperienceValue);
+    }
 
+    // Merge experience orbs, if one of the accessors is available.
+    if (mergeByCount || experienceOrbValue != null) {
       // Discard experience orb if merge was successful, before moving the existing experience orb.
       if (!experienceOrb.isRemoved()) {
         experienceOrb.discard();
       }
 
       // Move existing experience orb to the new location, but adjust the z position.
-      if (ExperienceOrbConfig.movePositionToLastDrop) {
+      if (movePosition) {
         existingExperienceOrb.moveTo(
             x, existingExperienceOrb.getY() + ((y - existingExperienceOrb.getY()) / 4), z);
       }
 
     } else {
-      // Move experience orb closer to existing experience orb, if merge was not successful.
-      if (raiseExpectationErrorOnce) {
-        log.error(
-            "Reflection failed: Unable to merge experience orbs {} with {} and {} xp.",
-            experienceOrb,
-            existingExperienceOrb,
-            newExperienceValue);
-        raiseExpectationErrorOnce = false;
-      }
+      // Move experience orb closer to existing experience orb, if merge is not possible.
       experienceOrb.moveTo(
           existingExperienceOrb.getBlockX(),
           existingExperienceOrb.getBlockY(),
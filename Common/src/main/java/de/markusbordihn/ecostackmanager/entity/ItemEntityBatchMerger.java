@@ -0,0 +1,247 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.entity;
+
+import de.markusbordihn.ecostackmanager.Constants;
+import de.markusbordihn.ecostackmanager.config.ItemEntityConfig;
+import de.markusbordihn.ecostackmanager.server.AdaptiveController;
+import de.markusbordihn.ecostackmanager.tracker.ItemEntityTracker;
+import de.markusbordihn.ecostackmanager.tracker.LevelTracker;
+import de.markusbordihn.ecostackmanager.tracker.MergeSignature;
+import de.markusbordihn.ecostackmanager.tracker.SkyVisibilityCache;
+import de.markusbordihn.ecostackmanager.utils.UnionFind;
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.ItemStack;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class ItemEntityBatchMerger {
+
+  private static final Logger log = LogManager.getLogger(Constants.LOG_NAME);
+
+  private ItemEntityBatchMerger() {}
+
+  public static void handleBatchMerge(LevelTracker levelTracker) {
+    ItemEntityTracker itemEntityTracker = levelTracker.getItemEntityTracker();
+    if (!itemEntityTracker.hasPending()) {
+      return;
+    }
+    long startTime = System.nanoTime();
+    ServerLevel serverLevel = levelTracker.getServerLevel();
+    List<ItemEntity> pendingItemEntities = itemEntityTracker.pollPending();
+
+    // Group the item entities which joined during this tick by their merge signature.
+    Long2ObjectMap<List<ItemEntity>> itemEntityGroups = new Long2ObjectLinkedOpenHashMap<>();
+    for (ItemEntity itemEntity : pendingItemEntities) {
+      if (ItemEntityManager.getRelevantItem(itemEntity) != null) {
+        itemEntityGroups
+            .computeIfAbsent(MergeSignature.of(itemEntity.getItem()), k -> new ArrayList<>())
+            .add(itemEntity);
+      }
+    }
+
+    // Merge each spatial cluster into as few item entities as possible, before handling the
+    // surviving item entities like regular joined item entities.
+    ItemEntityConfig itemEntityConfig = itemEntityTracker.getItemEntityConfig();
+    int collectRadius = AdaptiveController.getItemCollectRadius(itemEntityConfig);
+    int numberOfSurvivingItemEntities = 0;
+    for (Long2ObjectMap.Entry<List<ItemEntity>> itemEntityGroup :
+        itemEntityGroups.long2ObjectEntrySet()) {
+      // Merging item entities of the same group is not changing their merge signature.
+      long signature = itemEntityGroup.getLongKey();
+      for (List<ItemEntity> itemEntityCluster :
+          getItemEntityClusters(
+              itemEntityGroup.getValue(), levelTracker.getSkyVisibilityCache(), collectRadius)) {
+        for (ItemEntity itemEntity :
+            mergeItemEntityCluster(
+                itemEntityCluster,
+                itemEntityConfig.maxStackSize,
+                levelTracker.getSkyVisibilityCache(),
+                collectRadius)) {
+          if (!ItemEntityManager.handleItemEntity(
+              itemEntity,
+              itemEntity.getItem().getItem(),
+              signature,
+              serverLevel,
+              itemEntityTracker)) {
+            numberOfSurvivingItemEntities++;
+          }
+        }
+      }
+    }
+
+    if (log.isDebugEnabled()) {
+      log.debug(
+          "[Batch Merge {}] Merged {} item entities into {} item entities",
+          serverLevel.dimension().location(),
+          pendingItemEntities.size(),
+          numberOfSurvivingItemEntities);
+    }
+    levelTracker.getLevelMetrics().batchMergeNanos.record(System.nanoTime() - startTime);
+  }
+
+  private static Collection<List<ItemEntity>> getItemEntityClusters(
+      final List<ItemEntity> itemEntities,
+      final SkyVisibilityCache skyVisibilityCache,
+      final int collectRadius) {
+    int numberOfItemEntities = itemEntities.size();
+    if (numberOfItemEntities == 1 || collectRadius <= 0) {
+      List<List<ItemEntity>> itemEntityClusters = new ArrayList<>(numberOfItemEntities);
+      for (ItemEntity itemEntity : itemEntities) {
+        itemEntityClusters.add(List.of(itemEntity));
+      }
+      return itemEntityClusters;
+    }
+
+    // Bucket the item entities into columns with the size of the collect radius, so that only the
+    // neighbouring columns need to be compared. The y-axis is checked by the range check, because
+    // it is ignored for item entities which could both see the sky.
+    boolean[] canSeeSky = new boolean[numberOfItemEntities];
+    Long2ObjectMap<IntList> columns = new Long2ObjectOpenHashMap<>();
+    for (int i = 0; i < numberOfItemEntities; i++) {
+      ItemEntity itemEntity = itemEntities.get(i);
+      canSeeSky[i] = canSeeSky(skyVisibilityCache, itemEntity);
+      columns
+          .computeIfAbsent(
+              packColumn(
+                  Math.floorDiv((int) itemEntity.getX(), collectRadius),
+                  Math.floorDiv((int) itemEntity.getZ(), collectRadius)),
+              k -> new IntArrayList())
+          .add(i);
+    }
+
+    // Union all compatible item entities which are in range of each other.
+    UnionFind unionFind = new UnionFind(numberOfItemEntities);
+    for (int i = 0; i < numberOfItemEntities; i++) {
+      ItemEntity itemEntity = itemEntities.get(i);
+      int cellX = Math.floorDiv((int) itemEntity.getX(), collectRadius);
+      int cellZ = Math.floorDiv((int) itemEntity.getZ(), collectRadius);
+      for (int x = cellX - 1; x <= cellX + 1; x++) {
+        for (int z = cellZ - 1; z <= cellZ + 1; z++) {
+          IntList column = columns.get(packColumn(x, z));
+          if (column == null) {
+            continue;
+          }
+          for (int j : column) {
+            ItemEntity otherItemEntity = itemEntities.get(j);
+            if (j > i
+                && isInRange(
+                    itemEntity, canSeeSky[i], otherItemEntity, canSeeSky[j], collectRadius)
+                && ItemStack.isSameItemSameTags(itemEntity.getItem(), otherItemEntity.getItem())) {
+              unionFind.union(i, j);
+            }
+          }
+        }
+      }
+    }
+
+    // Collect the clusters in the order of the first joined item entity.
+    Int2ObjectMap<List<ItemEntity>> itemEntityClusters = new Int2ObjectLinkedOpenHashMap<>();
+    for (int i = 0; i < numberOfItemEntities; i++) {
+      itemEntityClusters
+          .computeIfAbsent(unionFind.find(i), k -> new ArrayList<>())
+          .add(itemEntities.get(i));
+    }
+    return itemEntityClusters.values();
+  }
+
+  private static List<ItemEntity> mergeItemEntityCluster(
+      final List<ItemEntity> itemEntityCluster,
+      final int maxStackSize,
+      final SkyVisibilityCache skyVisibilityCache,
+      final int collectRadius) {
+    // Clusters are transitive, so that a chain of item entities could span many collect radii.
+    // Each item entity is therefore only packed into surviving item entities within its own collect
+    // radius, like a regular joined item entity.
+    List<ItemEntity> survivingItemEntities = new ArrayList<>();
+    for (ItemEntity itemEntity : itemEntityCluster) {
+      if (itemEntity.isRemoved()) {
+        continue;
+      }
+      boolean itemCanSeeSky = canSeeSky(skyVisibilityCache, itemEntity);
+      ItemStack itemStack = itemEntity.getItem();
+      ItemEntity targetItemEntity = null;
+      for (ItemEntity survivingItemEntity : survivingItemEntities) {
+        ItemStack survivingItemStack = survivingItemEntity.getItem();
+        if (survivingItemStack.getCount()
+                >= Math.min(maxStackSize, survivingItemStack.getMaxStackSize())
+            || (collectRadius > 0
+                && !isInRange(
+                    itemEntity,
+                    itemCanSeeSky,
+                    survivingItemEntity,
+                    canSeeSky(skyVisibilityCache, survivingItemEntity),
+                    collectRadius))) {
+          continue;
+        }
+
+        // Move as many items as possible into the surviving item entity.
+        survivingItemEntity.setItem(ItemEntity.merge(survivingItemStack, itemStack, maxStackSize));
+        targetItemEntity = survivingItemEntity;
+        if (itemStack.isEmpty()) {
+          break;
+        }
+      }
+
+      // Discard empty item entities or continue with the rest as new surviving item entity.
+      if (itemStack.isEmpty() && targetItemEntity != null) {
+        VirtualItemStackManager.addVirtualCount(targetItemEntity, itemEntity);
+        itemEntity.discard();
+      } else {
+        itemEntity.setItem(itemStack);
+        survivingItemEntities.add(itemEntity);
+      }
+    }
+    return survivingItemEntities;
+  }
+
+  private static boolean canSeeSky(
+      final SkyVisibilityCache skyVisibilityCache, final ItemEntity itemEntity) {
+    return skyVisibilityCache.canSeeSky(
+        itemEntity.getBlockX(), itemEntity.getBlockY(), itemEntity.getBlockZ());
+  }
+
+  private static boolean isInRange(
+      final ItemEntity itemEntity,
+      final boolean itemCanSeeSky,
+      final ItemEntity otherItemEntity,
+      final boolean otherItemCanSeeSky,
+      final int collectRadius) {
+    return Math.abs((int) itemEntity.getX() - (int) otherItemEntity.getX()) < collectRadius
+        && Math.abs((int) itemEntity.getZ() - (int) otherItemEntity.getZ()) < collectRadius
+        && ((itemCanSeeSky && otherItemCanSeeSky)
+            || Math.abs((int) itemEntity.getY() - (int) otherItemEntity.getY()) < collectRadius);
+  }
+
+  private static long packColumn(int cellX, int cellZ) {
+    return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+  }
+}
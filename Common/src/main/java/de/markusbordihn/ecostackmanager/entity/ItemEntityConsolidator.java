@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.entity;
+
+import de.markusbordihn.ecostackmanager.Constants;
+import de.markusbordihn.ecostackmanager.tracker.ItemEntityTracker;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.ItemStack;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class ItemEntityConsolidator {
+
+  private static final Logger log = LogManager.getLogger(Constants.LOG_NAME);
+
+  private static final Comparator<ItemEntity> LARGEST_STACK_FIRST =
+      Comparator.comparingInt((ItemEntity itemEntity) -> itemEntity.getItem().getCount())
+          .reversed();
+
+  private static final List<ItemEntity> partialItemEntities = new ArrayList<>();
+
+  private ItemEntityConsolidator() {}
+
+  public static int consolidate(
+      final List<ItemEntity> itemEntities,
+      final int start,
+      final int end,
+      final ItemEntityTracker itemEntityTracker) {
+    if (end - start < 2) {
+      return 0;
+    }
+
+    // Collect all partial stacks of the bucket, which are equal to the first partial stack. The
+    // signature of the bucket could collide, so that the full item stack comparison is needed.
+    ItemStack referenceItemStack = null;
+    int maxStackSize = 0;
+    for (int i = start; i < end; i++) {
+      ItemEntity itemEntity = itemEntities.get(i);
+      ItemStack itemStack = itemEntity.getItem();
+      if (itemEntity.isRemoved() || !itemStack.isStackable() || itemStack.isEmpty()) {
+        continue;
+      }
+      if (referenceItemStack == null) {
+        referenceItemStack = itemStack;
+        maxStackSize =
+            Math.min(
+                itemEntityTracker.getItemEntityConfig().maxStackSize, itemStack.getMaxStackSize());
+      } else if (!ItemStack.isSameItemSameTags(referenceItemStack, itemStack)) {
+        continue;
+      }
+      if (itemStack.getCount() < maxStackSize) {
+        partialItemEntities.add(itemEntity);
+      }
+    }
+    if (partialItemEntities.size() < 2) {
+      partialItemEntities.clear();
+      return 0;
+    }
+
+    // Fill the largest stacks with the items of the smallest stacks, which results in the minimum
+    // number of stacks and only moves the items of the smallest stacks.
+    partialItemEntities.sort(LARGEST_STACK_FIRST);
+    int numberOfConsolidatedItemEntities = 0;
+    int targetIndex = 0;
+    int sourceIndex = partialItemEntities.size() - 1;
+    while (targetIndex < sourceIndex) {
+      ItemEntity targetItemEntity = partialItemEntities.get(targetIndex);
+      ItemStack targetItemStack = targetItemEntity.getItem();
+      if (targetItemStack.getCount() >= maxStackSize) {
+        targetIndex++;
+        continue;
+      }
+      ItemEntity sourceItemEntity = partialItemEntities.get(sourceIndex);
+      ItemStack sourceItemStack = sourceItemEntity.getItem();
+      targetItemEntity.setItem(ItemEntity.merge(targetItemStack, sourceItemStack, maxStackSize));
+      if (sourceItemStack.isEmpty()) {
+        // The emptied source is removed from the tracker right away, without relying on the leave
+        // event, which only sees the empty item stack.
+        VirtualItemStackManager.addVirtualCount(targetItemEntity, sourceItemEntity);
+        sourceItemEntity.discard();
+        itemEntityTracker.remove(sourceItemEntity);
+        numberOfConsolidatedItemEntities++;
+        sourceIndex--;
+      } else {
+        // The source stack is shrunk in place, so that a copy is needed to sync the new count.
+        sourceItemEntity.setItem(sourceItemStack.copy());
+        itemEntityTracker.update(sourceItemEntity);
+      }
+      itemEntityTracker.update(targetItemEntity);
+    }
+    partialItemEntities.clear();
+
+    if (numberOfConsolidatedItemEntities > 0 && log.isDebugEnabled()) {
+      log.debug(
+          "[Item Entity Consolidation] Consolidated {} {} item entities",
+          numberOfConsolidatedItemEntities,
+          referenceItemStack.getItem());
+    }
+    return numberOfConsolidatedItemEntities;
+  }
+}
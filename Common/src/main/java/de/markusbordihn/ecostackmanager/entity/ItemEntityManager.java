@@ -21,16 +21,21 @@ package de.markusbordihn.ecostackmanager.entity;
 
 import de.markusbordihn.ecostackmanager.Constants;
 import de.markusbordihn.ecostackmanager.config.ItemEntityConfig;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import net.minecraft.core.Registry;
+import de.markusbordihn.ecostackmanager.debug.EventTracer;
+import de.markusbordihn.ecostackmanager.debug.TraceEvent;
+import de.markusbordihn.ecostackmanager.metrics.LevelMetrics;
+import de.markusbordihn.ecostackmanager.server.AdaptiveController;
+import de.markusbordihn.ecostackmanager.tracker.EvictionQueue;
+import de.markusbordihn.ecostackmanager.tracker.EvictionStrategy;
+import de.markusbordihn.ecostackmanager.tracker.ItemEntityGrid;
+import de.markusbordihn.ecostackmanager.tracker.ItemEntityTracker;
+import de.markusbordihn.ecostackmanager.tracker.LevelTracker;
+import de.markusbordihn.ecostackmanager.tracker.LevelTrackerManager;
+import de.markusbordihn.ecostackmanager.tracker.MergeSignature;
+import de.markusbordihn.ecostackmanager.tracker.MergeTargetSelection;
 import net.minecraft.server.level.ServerLevel;
-import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -39,226 +44,294 @@ public class ItemEntityManager {
 
   private static final Logger log = LogManager.getLogger(Constants.LOG_NAME);
 
-  private static final Map<String, Set<ItemEntity>> itemTypeEntityMap = new ConcurrentHashMap<>();
-  private static final Map<String, Set<ItemEntity>> itemWorldEntityMap = new ConcurrentHashMap<>();
-
-  private static int itemEntityVerificationCounter = 0;
+  private static final long[] evictedItemEntities = new long[EvictionStrategy.values().length];
 
   private ItemEntityManager() {}
 
   public static boolean handleItemJoinWorldEvent(ItemEntity itemEntity, ServerLevel serverLevel) {
 
+    // Load the persisted virtual count, even for item entities which are not relevant anymore.
+    VirtualItemStackManager.handleItemJoinWorldEvent(itemEntity);
+
     // Check if we got a relevant and valid item entity.
-    String itemName = getNameFromRelevantItemEntity(itemEntity);
-    if (itemName == null || itemName.isEmpty()) {
+    Item item = getRelevantItem(itemEntity);
+    if (item == null) {
       return false;
     }
 
-    // Check if item is allowed to be optimized.
-    if (!ItemEntityConfig.allowList.isEmpty() && !ItemEntityConfig.allowList.contains(itemName)) {
-      log.debug(
-          "[Item Allow List] {} is not on the allow list: {}",
-          itemName,
-          ItemEntityConfig.allowList);
-      return false;
+    // Get level tracker and start processing of data
+    long startTime = System.nanoTime();
+    ItemEntityTracker itemEntityTracker =
+        LevelTrackerManager.getLevelTracker(serverLevel).getItemEntityTracker();
+    LevelMetrics levelMetrics = itemEntityTracker.getLevelMetrics();
+    levelMetrics.itemEntities.joins.increment();
+    levelMetrics.getItemType(item).joins.increment();
+    EventTracer.record(TraceEvent.ITEM_JOIN, itemEntity, itemEntity.getItem().getCount());
+
+    // Defer the item entity to the batch merge at the end of the tick, if enabled.
+    boolean result = false;
+    if (itemEntityTracker.getItemEntityConfig().batchMerge) {
+      itemEntityTracker.addPending(itemEntity);
+    } else {
+      result =
+          handleItemEntity(
+              itemEntity,
+              item,
+              MergeSignature.of(itemEntity.getItem()),
+              serverLevel,
+              itemEntityTracker);
     }
+    levelMetrics.itemJoinNanos.record(System.nanoTime() - startTime);
+    return result;
+  }
 
-    // Check if item is denied to be optimized.
-    if (!ItemEntityConfig.denyList.isEmpty() && ItemEntityConfig.denyList.contains(itemName)) {
-      log.debug(
-          "[Item Deny List] {} will not be optimized: {}", itemName, ItemEntityConfig.denyList);
-      return false;
+  public static boolean handleItemEntity(
+      ItemEntity itemEntity,
+      Item item,
+      long signature,
+      ServerLevel serverLevel,
+      ItemEntityTracker itemEntityTracker) {
+    // Check if items could be merged with other items. The merge signature hashes the whole tag of
+    // the item stack, so that it is only calculated once for the candidate lookup and the grid.
+    ItemEntityConfig itemEntityConfig = itemEntityTracker.getItemEntityConfig();
+    if (mergeWithNearbyItemEntity(
+            itemEntity,
+            signature,
+            itemEntityTracker,
+            itemEntityConfig.movePositionToLastDrop,
+            itemEntityConfig.mergeTargetSelection)
+        != null) {
+      return true;
     }
 
-    // Get world name and start processing of data
-    String levelName = serverLevel.dimension().location().toString();
-    log.debug("[Item Entity joined {}] {} {}", levelName, itemName, itemEntity);
-
-    // Check if items could be merged with other items
-    String itemTypeEntityMapKey = '[' + levelName + ']' + itemName;
-    itemTypeEntityMap.computeIfAbsent(itemTypeEntityMapKey, k -> new LinkedHashSet<>());
-    Set<ItemEntity> itemTypeEntities = itemTypeEntityMap.get(itemTypeEntityMapKey);
-
-    ItemStack itemStack = itemEntity.getItem();
-    if (itemStack.isStackable()
-        && itemStack.getCount() < itemStack.getMaxStackSize()
-        && itemStack.getMaxStackSize() > 1) {
-      // Get basic information about the current item.
-      double x = itemEntity.getX();
-      double y = itemEntity.getY();
-      double z = itemEntity.getZ();
-      int xStart = (int) x - ItemEntityConfig.collectRadius;
-      int yStart = (int) y - ItemEntityConfig.collectRadius;
-      int zStart = (int) z - ItemEntityConfig.collectRadius;
-      int xEnd = (int) x + ItemEntityConfig.collectRadius;
-      int yEnd = (int) y + ItemEntityConfig.collectRadius;
-      int zEnd = (int) z + ItemEntityConfig.collectRadius;
-      boolean itemCanSeeSky = serverLevel.canSeeSky(itemEntity.blockPosition());
-
-      // Compare information with known items.
-      Set<ItemEntity> itemEntities = new HashSet<>(itemTypeEntities);
-      for (ItemEntity existingItemEntity : itemEntities) {
-        ItemStack existingItemStack = existingItemEntity.getItem();
-
-        // Check if they are in an equal position, if both could see the sky, ignore the y values.
-        if (shouldMerge(
-            itemEntity,
-            itemStack,
-            itemCanSeeSky,
-            existingItemEntity,
-            existingItemStack,
-            xStart,
-            yStart,
-            zStart,
-            xEnd,
-            yEnd,
-            zEnd,
-            serverLevel)) {
-          mergeItemStacks(itemEntity, itemStack, existingItemEntity, existingItemStack, x, y, z);
-          return true;
-        }
+    // Storing items per type and world
+    EvictionQueue itemTypeEntities = itemEntityTracker.add(itemEntity, item, signature);
+
+    // Optimized items per chunk and region first, so that the eviction stays local to the chunk or
+    // region which is exceeding the limit.
+    long chunkKey = itemEntity.chunkPosition().toLong();
+    int maxNumberOfItemsPerChunk = AdaptiveController.getMaxNumberOfItemsPerChunk(itemEntityConfig);
+    if (maxNumberOfItemsPerChunk > 0) {
+      EvictionQueue itemChunkEntities = itemEntityTracker.getItemChunkEntities(chunkKey);
+      int numberOfItemChunkEntities = itemChunkEntities != null ? itemChunkEntities.size() : 0;
+      if (numberOfItemChunkEntities > maxNumberOfItemsPerChunk) {
+        evictItemEntity(itemEntityTracker, itemChunkEntities, TraceEvent.ITEM_EVICT_CHUNK);
+      }
+    }
+    int maxNumberOfItemsPerRegion =
+        AdaptiveController.getMaxNumberOfItemsPerRegion(itemEntityConfig);
+    if (maxNumberOfItemsPerRegion > 0) {
+      EvictionQueue itemRegionEntities =
+          itemEntityTracker.getItemRegionEntities(ItemEntityTracker.getRegionKey(chunkKey));
+      int numberOfItemRegionEntities = itemRegionEntities != null ? itemRegionEntities.size() : 0;
+      if (numberOfItemRegionEntities > maxNumberOfItemsPerRegion) {
+        evictItemEntity(itemEntityTracker, itemRegionEntities, TraceEvent.ITEM_EVICT_REGION);
       }
     }
-
-    // Storing items per world regardless of item type
-    itemWorldEntityMap.computeIfAbsent(levelName, k -> new LinkedHashSet<>());
-    Set<ItemEntity> itemWorldEntities = itemWorldEntityMap.get(levelName);
-    itemWorldEntities.add(itemEntity);
 
     // Optimized items per world regardless of type if they're exceeding maxNumberOfItems limit.
+    EvictionQueue itemWorldEntities = itemEntityTracker.getItemWorldEntities();
     int numberOfItemWorldEntities = itemWorldEntities.size();
-    if (ItemEntityConfig.maxNumberOfItemsPerWorld > 0
-        && numberOfItemWorldEntities > ItemEntityConfig.maxNumberOfItemsPerWorld) {
-      ItemEntity firsItemWorldEntity = itemWorldEntities.iterator().next();
-      log.debug(
-          "[Item Entity World Limit {}] Removing first item {}",
-          numberOfItemWorldEntities,
-          firsItemWorldEntity);
-      firsItemWorldEntity.discard();
-      itemWorldEntities.remove(firsItemWorldEntity);
-      Set<ItemEntity> itemEntities = itemTypeEntityMap.get('[' + levelName + ']' + itemName);
-      if (itemEntities != null) {
-        itemEntities.remove(firsItemWorldEntity);
-      }
+    int maxNumberOfItemsPerWorld = AdaptiveController.getMaxNumberOfItemsPerWorld(itemEntityConfig);
+    if (maxNumberOfItemsPerWorld > 0 && numberOfItemWorldEntities > maxNumberOfItemsPerWorld) {
+      evictItemEntity(itemEntityTracker, itemWorldEntities, TraceEvent.ITEM_EVICT_WORLD);
     }
 
-    // Storing items per type and world
-    itemTypeEntities.add(itemEntity);
-
     // Optimized items per type and world if exceeding numberOfItemsPerType limit.
     int numberOfItemTypeEntities = itemTypeEntities.size();
-    if (ItemEntityConfig.maxNumberOfItemsPerType > 0
-        && numberOfItemTypeEntities > ItemEntityConfig.maxNumberOfItemsPerType) {
-      ItemEntity firstItemEntity = itemTypeEntities.iterator().next();
-      log.debug(
-          "[Item Entity Type Limit {}] Removing first item {}",
-          numberOfItemTypeEntities,
-          firstItemEntity);
-      firstItemEntity.discard();
-      itemTypeEntities.remove(firstItemEntity);
-      itemWorldEntities.remove(firstItemEntity);
+    int maxNumberOfItemsPerType = AdaptiveController.getMaxNumberOfItemsPerType(itemEntityConfig);
+    if (maxNumberOfItemsPerType > 0 && numberOfItemTypeEntities > maxNumberOfItemsPerType) {
+      evictItemEntity(itemEntityTracker, itemTypeEntities, TraceEvent.ITEM_EVICT_TYPE);
     }
 
-    // Verify item entities after a specific number of tracked items.
-    if (itemEntityVerificationCounter++ >= ItemEntityConfig.verificationCycle) {
-      verifyItemEntities();
-      itemEntityVerificationCounter = 0;
-    }
+    // The joined item entity itself could be the evicted one.
+    return itemEntity.isRemoved();
+  }
 
-    return false;
+  public static ItemEntity mergeWithNearbyItemEntity(
+      ItemEntity itemEntity, ItemEntityTracker itemEntityTracker, boolean movePosition) {
+    return mergeWithNearbyItemEntity(
+        itemEntity,
+        itemEntityTracker,
+        movePosition,
+        itemEntityTracker.getItemEntityConfig().mergeTargetSelection);
   }
 
-  public static void handleItemLeaveWorldEvent(ItemEntity itemEntity, ServerLevel serverLevel) {
-    // Check if we got a relevant and valid item entity.
-    String itemName = getNameFromRelevantItemEntity(itemEntity);
-    if (itemName == null || itemName.isEmpty()) {
-      return;
+  public static ItemEntity mergeWithNearbyItemEntity(
+      ItemEntity itemEntity,
+      ItemEntityTracker itemEntityTracker,
+      boolean movePosition,
+      MergeTargetSelection mergeTargetSelection) {
+    if (!canMerge(itemEntity.getItem(), itemEntityTracker.getItemEntityConfig().virtualStacking)) {
+      return null;
     }
+    return mergeWithNearbyItemEntity(
+        itemEntity,
+        MergeSignature.of(itemEntity.getItem()),
+        itemEntityTracker,
+        movePosition,
+        mergeTargetSelection);
+  }
 
-    // Get world name and start processing of data
-    String levelName = serverLevel.dimension().location().toString();
-
-    // Remove item from world map.
-    Set<ItemEntity> itemWorldEntities = itemWorldEntityMap.get(levelName);
-    if (itemWorldEntities != null) {
-      itemWorldEntities.remove(itemEntity);
+  public static ItemEntity mergeWithNearbyItemEntity(
+      ItemEntity itemEntity,
+      long signature,
+      ItemEntityTracker itemEntityTracker,
+      boolean movePosition,
+      MergeTargetSelection mergeTargetSelection) {
+    ItemStack itemStack = itemEntity.getItem();
+    ItemEntityConfig itemEntityConfig = itemEntityTracker.getItemEntityConfig();
+    boolean virtualStacking = itemEntityConfig.virtualStacking;
+    if (!canMerge(itemStack, virtualStacking)) {
+      return null;
     }
 
-    // Remove item from world type map.
-    Set<ItemEntity> itemTypeEntities = itemTypeEntityMap.get('[' + levelName + ']' + itemName);
-    if (itemTypeEntities != null) {
-      if (log.isDebugEnabled()) {
-        log.debug("[Item Entity leaved {}] {} {}.", levelName, itemName, itemEntity);
-      }
-      itemTypeEntities.remove(itemEntity);
-    } else {
-      log.warn("[Item Entity leaved {}] {} {} was not tracked!", levelName, itemName, itemEntity);
+    // Get basic information about the current item.
+    ItemEntityGrid itemWorldGrid = itemEntityTracker.getItemEntityGrid();
+    double x = itemEntity.getX();
+    double y = itemEntity.getY();
+    double z = itemEntity.getZ();
+    int collectRadius = AdaptiveController.getItemCollectRadius(itemEntityConfig);
+    int xStart = (int) x - collectRadius;
+    int yStart = (int) y - collectRadius;
+    int zStart = (int) z - collectRadius;
+    int xEnd = (int) x + collectRadius;
+    int yEnd = (int) y + collectRadius;
+    int zEnd = (int) z + collectRadius;
+    boolean itemCanSeeSky = itemWorldGrid.canSeeSky(itemEntity);
+
+    // Compare information with known items with the same merge signature in the neighbouring
+    // cells of the grid and select the best of the first matching candidates.
+    ItemEntity existingItemEntity =
+        itemWorldGrid.findMergeCandidate(
+            itemEntity,
+            signature,
+            itemCanSeeSky,
+            candidateItemEntity ->
+                shouldMerge(
+                    itemEntity,
+                    itemStack,
+                    virtualStacking,
+                    itemCanSeeSky,
+                    candidateItemEntity,
+                    candidateItemEntity.getItem(),
+                    xStart,
+                    yStart,
+                    zStart,
+                    xEnd,
+                    yEnd,
+                    zEnd,
+                    itemWorldGrid),
+            mergeTargetSelection.isScored()
+                ? candidateItemEntity ->
+                    mergeTargetSelection.getScore(
+                        itemEntity.distanceToSqr(candidateItemEntity),
+                        getRemainingRoom(
+                            candidateItemEntity.getItem(), itemEntityConfig.maxStackSize))
+                : null,
+            itemEntityConfig.maxMergeCandidates);
+    LevelMetrics levelMetrics = itemEntityTracker.getLevelMetrics();
+    levelMetrics.itemMergeCandidates.record(itemWorldGrid.getScannedMergeCandidates());
+
+    // Check if they are in an equal position, if both could see the sky, ignore the y values.
+    if (existingItemEntity != null) {
+      // The item type is counted before the merge, which could empty the item stack.
+      levelMetrics.itemEntities.merges.increment();
+      levelMetrics.getItemType(itemStack.getItem()).merges.increment();
+      mergeItemStacks(
+          itemEntity,
+          itemStack,
+          existingItemEntity,
+          existingItemEntity.getItem(),
+          virtualStacking,
+          itemEntityConfig.maxStackSize,
+          movePosition,
+          x,
+          y,
+          z);
+      itemEntityTracker.update(existingItemEntity);
     }
+    return existingItemEntity;
   }
 
-  private static String getNameFromRelevantItemEntity(final ItemEntity itemEntity) {
-    if (itemEntity == null || itemEntity.isRemoved() || itemEntity.hasCustomName()) {
-      return null;
-    }
+  private static boolean canMerge(final ItemStack itemStack, final boolean virtualStacking) {
+    // Full item stacks are only merged into the virtual count of other item entities.
+    return itemStack.isStackable()
+        && (virtualStacking || itemStack.getCount() < itemStack.getMaxStackSize())
+        && itemStack.getMaxStackSize() > 1;
+  }
 
-    // All items have the entity minecraft.item, so we are using the translation key
-    // to better distinguish the different types of items and minecraft.item as backup.
-    String itemName = Registry.ITEM.getKey(itemEntity.getItem().getItem()).toString();
-    if (itemName.isEmpty()) {
-      return null;
-    }
+  private static int getRemainingRoom(final ItemStack itemStack, final int maxStackSize) {
+    return Math.max(0, Math.min(itemStack.getMaxStackSize(), maxStackSize) - itemStack.getCount());
+  }
 
-    // Ignore dropped air blocks because these are not used at all by the players.
-    // Warning: Removing the air block is a bad idea, because it's used to pre-reserve the space.
-    if (itemName.equals("block.minecraft.air") || itemName.equals("minecraft:air")) {
-      return null;
-    }
+  public static long getEvictedItemEntities(EvictionStrategy evictionStrategy) {
+    return evictedItemEntities[evictionStrategy.ordinal()];
+  }
 
-    // Ignore specific entities from mods which implements their own spawn handling, logic or
-    // using pseudo mobs for interactive blocks.
-    if (Constants.MOD_CREATE_LOADED && itemName.startsWith("create")) {
-      return null;
+  private static ItemEntity evictItemEntity(
+      ItemEntityTracker itemEntityTracker, EvictionQueue evictionQueue, TraceEvent traceEvent) {
+    int numberOfItemEntities = evictionQueue.size();
+    // Evicted item entities are losing their virtual count as well.
+    ItemEntity itemEntityToEvict = evictionQueue.peek();
+    if (itemEntityToEvict != null) {
+      VirtualItemStackManager.markDestroyed(itemEntityToEvict);
     }
-
-    return itemName;
+    ItemEntity evictedItemEntity = itemEntityTracker.evict(evictionQueue);
+    if (evictedItemEntity != null) {
+      evictedItemEntities[itemEntityTracker.getEvictionStrategy().ordinal()]++;
+      LevelMetrics levelMetrics = itemEntityTracker.getLevelMetrics();
+      levelMetrics.itemEntities.evictions.increment();
+      levelMetrics.getItemType(evictedItemEntity.getItem().getItem()).evictions.increment();
+      EventTracer.record(traceEvent, evictedItemEntity, numberOfItemEntities);
+    }
+    return evictedItemEntity;
   }
 
-  private static void verifyItemEntities() {
-    log.debug("[Verification] Start verification of tracked item entities ...");
+  public static void handleItemLeaveWorldEvent(ItemEntity itemEntity, ServerLevel serverLevel) {
+    // Item entities are already marked as removed when they leave the level, so that the relevance
+    // check is skipped and only tracked item entities are removed.
+    if (itemEntity == null) {
+      return;
+    }
 
-    // Verify Entities in overall overview
-    int removedItemsType = getRemovedItemEntities(itemTypeEntityMap);
+    // Split the virtual count into a new item entity, even if virtual stacking was disabled in the
+    // meantime, to not lose any items.
+    LevelTracker levelTracker = LevelTrackerManager.findLevelTracker(serverLevel);
+    VirtualItemStackManager.handleItemLeaveWorldEvent(
+        itemEntity,
+        levelTracker != null ? levelTracker.getItemEntityConfig() : ItemEntityConfig.get());
 
-    // Verify Entities from world specific overview
-    int removedItemsWorld = getRemovedItemEntities(itemWorldEntityMap);
+    // Item entities of an already unloaded level are no longer tracked.
+    if (levelTracker == null) {
+      return;
+    }
+    ItemEntityTracker itemEntityTracker = levelTracker.getItemEntityTracker();
 
-    if (removedItemsType > 0 || removedItemsWorld > 0) {
-      log.debug(
-          "[Verification] Removed {} items ({} items per type / {} items per world)",
-          removedItemsType + removedItemsWorld,
-          removedItemsType,
-          removedItemsWorld);
+    // Remove item from level tracker.
+    if (itemEntityTracker.removePending(itemEntity)) {
+      return;
+    }
+    if (itemEntityTracker.remove(itemEntity)) {
+      EventTracer.record(TraceEvent.ITEM_LEAVE, itemEntity, itemEntity.getItem().getCount());
     }
   }
 
-  private static int getRemovedItemEntities(Map<String, Set<ItemEntity>> itemTypeEntityMap) {
-    int removedItemsType = 0;
-    for (Set<ItemEntity> entities : itemTypeEntityMap.values()) {
-      Iterator<ItemEntity> entityIterator = entities.iterator();
-      while (entityIterator.hasNext()) {
-        Entity entity = entityIterator.next();
-        if (entity != null && entity.isRemoved()) {
-          entityIterator.remove();
-          removedItemsType++;
-        }
-      }
+  public static Item getRelevantItem(final ItemEntity itemEntity) {
+    if (itemEntity == null || itemEntity.isRemoved() || itemEntity.hasCustomName()) {
+      return null;
     }
-    return removedItemsType;
+
+    // The relevance of an item only depends on the item itself, so that it is looked up in the
+    // precompiled policy table.
+    Item item = itemEntity.getItem().getItem();
+    return ItemPolicyTable.isRelevant(item) ? item : null;
   }
 
   private static boolean shouldMerge(
       final ItemEntity itemEntity,
       final ItemStack itemStack,
+      final boolean virtualStacking,
       final boolean itemCanSeeSky,
       final ItemEntity existingItemEntity,
       final ItemStack existingItemStack,
@@ -268,16 +341,19 @@ public class ItemEntityManager {
       final int xEnd,
       final int yEnd,
       final int zEnd,
-      final ServerLevel serverLevel) {
-    boolean existingItemCanSeeSky = serverLevel.canSeeSky(existingItemEntity.blockPosition());
+      final ItemEntityGrid itemWorldGrid) {
     int x = (int) existingItemEntity.getX();
     int y = (int) existingItemEntity.getY();
     int z = (int) existingItemEntity.getZ();
     return itemEntity.getId() != existingItemEntity.getId()
         && existingItemEntity.isAlive()
-        && ItemEntity.areMergable(itemStack, existingItemStack)
+        && (virtualStacking
+            ? existingItemStack.isStackable()
+                && ItemStack.isSameItemSameTags(itemStack, existingItemStack)
+            : ItemEntity.areMergable(itemStack, existingItemStack))
         && (xStart < x && x < xEnd)
-        && ((itemCanSeeSky && existingItemCanSeeSky) || (yStart < y && y < yEnd))
+        && ((yStart < y && y < yEnd)
+            || (itemCanSeeSky && itemWorldGrid.canSeeSky(existingItemEntity)))
         && (zStart < z && z < zEnd);
   }
 
@@ -286,20 +362,20 @@ public class ItemEntityManager {
       ItemStack itemStack,
       ItemEntity existingItemEntity,
       ItemStack existingItemStack,
+      final boolean virtualStacking,
+      final int maxStackSize,
+      final boolean movePosition,
       final double x,
       final double y,
       final double z) {
     // Combine item stacks and update the existing item entity.
-    ItemStack combinedItemStack =
-        ItemEntity.merge(existingItemStack, itemStack, ItemEntityConfig.maxStackSize);
-    log.debug(
-        "[Merging Item Entity] {} with {} and {} items",
-        itemEntity,
-        existingItemEntity,
-        combinedItemStack);
-
-    // Set the combined item stack to the existing item entity.
-    existingItemEntity.setItem(combinedItemStack);
+    if (virtualStacking) {
+      VirtualItemStackManager.mergeItemStacks(itemEntity, existingItemEntity, maxStackSize);
+    } else {
+      existingItemEntity.setItem(ItemEntity.merge(existingItemStack, itemStack, maxStackSize));
+    }
+    EventTracer.record(
+        TraceEvent.ITEM_MERGE, existingItemEntity, existingItemEntity.getItem().getCount());
 
     // Remove item entity before moving the existing item entity to the new position.
     if (!itemEntity.isRemoved()) {
@@ -307,7 +383,7 @@ public class ItemEntityManager {
     }
 
     // Update position of the item entity to the new position, but adjust the z position.
-    if (ItemEntityConfig.movePositionToLastDrop) {
+    if (movePosition) {
       existingItemEntity.setPos(
           x, existingItemEntity.getY() + ((y - existingItemEntity.getY()) / 4), z);
     }
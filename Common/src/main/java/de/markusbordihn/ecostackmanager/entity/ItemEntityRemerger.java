@@ -0,0 +1,143 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.entity;
+
+import de.markusbordihn.ecostackmanager.Constants;
+import de.markusbordihn.ecostackmanager.config.ItemEntityConfig;
+import de.markusbordihn.ecostackmanager.tracker.ItemEntityGrid;
+import de.markusbordihn.ecostackmanager.tracker.ItemEntityTracker;
+import de.markusbordihn.ecostackmanager.tracker.LevelTracker;
+import de.markusbordihn.ecostackmanager.tracker.LevelTrackerManager;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import net.minecraft.world.entity.item.ItemEntity;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class ItemEntityRemerger {
+
+  private static final Logger log = LogManager.getLogger(Constants.LOG_NAME);
+  private static final String LOG_PREFIX = "[Item Entity Remerge]";
+
+  private static final List<ItemEntity> cellItemEntities = new ArrayList<>();
+  private static final IntList cellBucketEnds = new IntArrayList();
+
+  private static long remergedItemEntities = 0;
+  private static long consolidatedItemEntities = 0;
+
+  private ItemEntityRemerger() {}
+
+  public static void handleRemerge() {
+    // The remerge budget is shared by all dimensions, so that only the global value is used.
+    int remergeBudgetMicros = ItemEntityConfig.get().remergeBudgetMicros;
+    if (remergeBudgetMicros <= 0) {
+      return;
+    }
+
+    // The time budget per tick is shared between all levels with tracked item entities.
+    Collection<LevelTracker> levelTrackers = LevelTrackerManager.getLevelTrackers();
+    if (levelTrackers.isEmpty()) {
+      return;
+    }
+    long budgetNanos = remergeBudgetMicros * 1000L / levelTrackers.size();
+    for (LevelTracker levelTracker : levelTrackers) {
+      handleRemerge(levelTracker.getItemEntityTracker(), budgetNanos);
+    }
+  }
+
+  private static void handleRemerge(ItemEntityTracker itemEntityTracker, long budgetNanos) {
+    ItemEntityGrid itemEntityGrid = itemEntityTracker.getItemEntityGrid();
+    if (itemEntityGrid.size() < 2) {
+      return;
+    }
+    ItemEntityConfig itemEntityConfig = itemEntityTracker.getItemEntityConfig();
+
+    // Walk the occupied cells in a round-robin order, which continues from the last cell on the
+    // next tick, until the time budget is used up or all cells are visited once.
+    long startTime = System.nanoTime();
+    long deadline = startTime + budgetNanos;
+    int numberOfCells = itemEntityGrid.getNumberOfCells();
+    int numberOfRemergedItemEntities = 0;
+    int numberOfConsolidatedItemEntities = 0;
+    for (int i = 0; i < numberOfCells && System.nanoTime() < deadline; i++) {
+      if (!itemEntityGrid.nextCellItemEntities(cellItemEntities, cellBucketEnds)) {
+        break;
+      }
+
+      // Repack the partial stacks of each signature bucket into the minimum number of stacks,
+      // before merging the remaining partial stacks with the neighbouring cells.
+      if (itemEntityConfig.consolidatePartialStacks) {
+        int bucketStart = 0;
+        for (int b = 0; b < cellBucketEnds.size(); b++) {
+          int bucketEnd = cellBucketEnds.getInt(b);
+          numberOfConsolidatedItemEntities +=
+              ItemEntityConsolidator.consolidate(
+                  cellItemEntities, bucketStart, bucketEnd, itemEntityTracker);
+          bucketStart = bucketEnd;
+        }
+      }
+
+      for (ItemEntity itemEntity : cellItemEntities) {
+        // Merged item entities are discarded, so that they are skipped for the rest of the cell.
+        if (!itemEntity.isRemoved()
+            && ItemEntityManager.mergeWithNearbyItemEntity(itemEntity, itemEntityTracker, false)
+                != null) {
+          numberOfRemergedItemEntities++;
+        }
+      }
+      cellItemEntities.clear();
+      cellBucketEnds.clear();
+    }
+    itemEntityTracker.getLevelMetrics().remergeNanos.record(System.nanoTime() - startTime);
+
+    if (numberOfConsolidatedItemEntities > 0) {
+      consolidatedItemEntities += numberOfConsolidatedItemEntities;
+      if (log.isDebugEnabled()) {
+        log.debug(
+            "{} Consolidated {} partial item entities (total: {})",
+            LOG_PREFIX,
+            numberOfConsolidatedItemEntities,
+            consolidatedItemEntities);
+      }
+    }
+
+    if (numberOfRemergedItemEntities > 0) {
+      remergedItemEntities += numberOfRemergedItemEntities;
+      if (log.isDebugEnabled()) {
+        log.debug(
+            "{} Merged {} drifted item entities (total: {})",
+            LOG_PREFIX,
+            numberOfRemergedItemEntities,
+            remergedItemEntities);
+      }
+    }
+  }
+
+  public static long getRemergedItemEntities() {
+    return remergedItemEntities;
+  }
+
+  public static long getConsolidatedItemEntities() {
+    return consolidatedItemEntities;
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.entity;
+
+import de.markusbordihn.ecostackmanager.Constants;
+import de.markusbordihn.ecostackmanager.config.ConfigSnapshot;
+import de.markusbordihn.ecostackmanager.config.ItemEntityConfig;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+import net.minecraft.core.Holder;
+import net.minecraft.core.Registry;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.Items;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class ItemPolicyTable {
+
+  private static final Logger log = LogManager.getLogger(Constants.LOG_NAME);
+  private static final String LOG_PREFIX = "[Item Policy Table]";
+
+  // Relevance of all items indexed by their registry id, which is rebuilt on the server tick if the
+  // configuration was reloaded or the tags were reloaded.
+  private static BitSet relevantItems = new BitSet();
+  private static int numberOfItems = 0;
+  private static int configVersion = -1;
+  private static boolean rebuildRequested = false;
+
+  private ItemPolicyTable() {}
+
+  public static boolean isRelevant(final Item item) {
+    // The table is only built on demand, if item entities are joining before the first server tick.
+    int itemId = Registry.ITEM.getId(item);
+    if (itemId >= numberOfItems) {
+      build();
+    }
+    return relevantItems.get(itemId);
+  }
+
+  public static void handleServerTick() {
+    // Rebuild the table outside the join event, so that no join has to scan the whole registry.
+    if (rebuildRequested || configVersion != ConfigSnapshot.get().version) {
+      build();
+    }
+  }
+
+  public static void handleTagsReload() {
+    // Item tags of the allow and deny lists could have changed with a data pack reload.
+    rebuildRequested = true;
+  }
+
+  public static void invalidate() {
+    relevantItems = new BitSet();
+    numberOfItems = 0;
+    configVersion = -1;
+    rebuildRequested = false;
+  }
+
+  private static void build() {
+    ConfigSnapshot configSnapshot = ConfigSnapshot.get();
+    ItemEntityConfig itemEntityConfig = configSnapshot.itemEntityConfig;
+    BitSet allowedItems = matchItems(itemEntityConfig.allowList);
+    BitSet deniedItems = matchItems(itemEntityConfig.denyList);
+    BitSet result = new BitSet(Registry.ITEM.size());
+    for (Item item : Registry.ITEM) {
+      int itemId = Registry.ITEM.getId(item);
+      if (isRelevant(item, itemId, allowedItems, deniedItems, itemEntityConfig)) {
+        result.set(itemId);
+      }
+    }
+    relevantItems = result;
+    numberOfItems = Registry.ITEM.size();
+    configVersion = configSnapshot.version;
+    rebuildRequested = false;
+    log.debug(
+        "{} {} of {} items will be optimized (allow list: {}, deny list: {})",
+        LOG_PREFIX,
+        result.cardinality(),
+        numberOfItems,
+        itemEntityConfig.allowList,
+        itemEntityConfig.denyList);
+  }
+
+  private static boolean isRelevant(
+      final Item item,
+      final int itemId,
+      final BitSet allowedItems,
+      final BitSet deniedItems,
+      final ItemEntityConfig itemEntityConfig) {
+    // Ignore dropped air blocks because these are not used at all by the players.
+    // Warning: Removing the air block is a bad idea, because it's used to pre-reserve the space.
+    if (item == Items.AIR) {
+      return false;
+    }
+
+    // Ignore specific entities from mods which implements their own spawn handling, logic or
+    // using pseudo mobs for interactive blocks.
+    if (Constants.MOD_CREATE_LOADED
+        && Registry.ITEM.getKey(item).getNamespace().startsWith("create")) {
+      return false;
+    }
+
+    // Check if item is allowed and not denied to be optimized.
+    return (itemEntityConfig.allowList.isEmpty() || allowedItems.get(itemId))
+        && !deniedItems.get(itemId);
+  }
+
+  private static BitSet matchItems(final Set<String> itemNames) {
+    // Entries could be item names (minecraft:stone), whole mods (minecraft:*) or item tags
+    // (#minecraft:logs).
+    BitSet result = new BitSet();
+    Set<String> names = new HashSet<>();
+    Set<String> namespaces = new HashSet<>();
+    for (String itemName : itemNames) {
+      String entry = itemName.trim();
+      if (entry.startsWith("#")) {
+        ResourceLocation tagLocation = ResourceLocation.tryParse(entry.substring(1));
+        if (tagLocation == null) {
+          log.error("{} Invalid item tag {}", LOG_PREFIX, entry);
+          continue;
+        }
+        for (Holder<Item> holder :
+            Registry.ITEM.getTagOrEmpty(TagKey.create(Registry.ITEM_REGISTRY, tagLocation))) {
+          result.set(Registry.ITEM.getId(holder.value()));
+        }
+      } else if (entry.endsWith(":*")) {
+        namespaces.add(entry.substring(0, entry.length() - 2));
+      } else if (!entry.isEmpty()) {
+        names.add(entry);
+      }
+    }
+    if (names.isEmpty() && namespaces.isEmpty()) {
+      return result;
+    }
+    for (Item item : Registry.ITEM) {
+      ResourceLocation itemKey = Registry.ITEM.getKey(item);
+      if (names.contains(itemKey.toString()) || namespaces.contains(itemKey.getNamespace())) {
+        result.set(Registry.ITEM.getId(item));
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.entity;
+
+import de.markusbordihn.ecostackmanager.Constants;
+import de.markusbordihn.ecostackmanager.config.ItemEntityConfig;
+import de.markusbordihn.ecostackmanager.debug.EventTracer;
+import de.markusbordihn.ecostackmanager.debug.TraceEvent;
+import de.markusbordihn.ecostackmanager.tracker.ItemEntityTracker;
+import de.markusbordihn.ecostackmanager.tracker.LevelTracker;
+import de.markusbordihn.ecostackmanager.tracker.LevelTrackerManager;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.List;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.ItemStack;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class VirtualItemStackManager {
+
+  private static final Logger log = LogManager.getLogger(Constants.LOG_NAME);
+  private static final String LOG_PREFIX = "[Virtual Item Stack]";
+
+  // Item entities with a virtual count indexed by their entity id. The virtual count is read from
+  // the persistent entity data once on join and written back on every change.
+  private static final Int2ObjectMap<VirtualItemStack> virtualItemStacks =
+      new Int2ObjectOpenHashMap<>();
+  private static final List<VirtualItemStack> refillItemStacks = new ArrayList<>();
+  private static final List<ItemEntity> pendingItemEntities = new ArrayList<>();
+
+  // The storage is provided by the mod loader, without it virtual counts are only kept in memory.
+  private static VirtualCountStorage virtualCountStorage = null;
+
+  private VirtualItemStackManager() {}
+
+  public static void registerVirtualCountStorage(final VirtualCountStorage storage) {
+    log.info("{} Using {} to persist virtual counts", LOG_PREFIX, storage.getClass().getName());
+    virtualCountStorage = storage;
+  }
+
+  public static void handleItemJoinWorldEvent(final ItemEntity itemEntity) {
+    // Item entities with a persisted virtual count are cached, so that later lookups and the
+    // split on pickup are not reading the entity data again.
+    if (virtualCountStorage == null || itemEntity.isRemoved()) {
+      return;
+    }
+    int virtualCount = virtualCountStorage.load(itemEntity);
+    if (virtualCount > 0) {
+      virtualItemStacks.put(
+          itemEntity.getId(), new VirtualItemStack(itemEntity, itemEntity.getItem(), virtualCount));
+    }
+  }
+
+  public static int getVirtualCount(final ItemEntity itemEntity) {
+    VirtualItemStack virtualItemStack = virtualItemStacks.get(itemEntity.getId());
+    return virtualItemStack != null ? virtualItemStack.virtualCount : 0;
+  }
+
+  public static void setVirtualCount(final ItemEntity itemEntity, final long virtualCount) {
+    int newVirtualCount = (int) Math.max(0, Math.min(Integer.MAX_VALUE, virtualCount));
+    VirtualItemStack virtualItemStack = virtualItemStacks.get(itemEntity.getId());
+    if ((virtualItemStack != null ? virtualItemStack.virtualCount : 0) == newVirtualCount) {
+      return;
+    }
+    if (virtualCountStorage != null) {
+      virtualCountStorage.store(itemEntity, newVirtualCount);
+    }
+    if (newVirtualCount <= 0) {
+      virtualItemStacks.remove(itemEntity.getId());
+    } else if (virtualItemStack == null) {
+      virtualItemStacks.put(
+          itemEntity.getId(),
+          new VirtualItemStack(itemEntity, itemEntity.getItem(), newVirtualCount));
+    } else {
+      virtualItemStack.setItemStack(itemEntity.getItem());
+      virtualItemStack.virtualCount = newVirtualCount;
+    }
+  }
+
+  public static void markDestroyed(final ItemEntity itemEntity) {
+    // Evicted and despawned item entities are discarded like picked up item entities, so that they
+    // need to be marked to lose their virtual count instead of splitting it.
+    VirtualItemStack virtualItemStack = virtualItemStacks.get(itemEntity.getId());
+    if (virtualItemStack != null) {
+      virtualItemStack.destroyed = true;
+    }
+  }
+
+  public static void addVirtualCount(
+      final ItemEntity itemEntity, final ItemEntity otherItemEntity) {
+    // Moves the virtual count of the other item entity, which is about to be discarded.
+    int otherVirtualCount = getVirtualCount(otherItemEntity);
+    if (otherVirtualCount > 0) {
+      setVirtualCount(itemEntity, (long) getVirtualCount(itemEntity) + otherVirtualCount);
+      setVirtualCount(otherItemEntity, 0);
+    }
+  }
+
+  public static void mergeItemStacks(
+      final ItemEntity itemEntity, final ItemEntity existingItemEntity, final int maxStackSize) {
+    // Fill up the real item stack first and add the rest of the items to the virtual count.
+    ItemStack itemStack = itemEntity.getItem();
+    existingItemEntity.setItem(
+        ItemEntity.merge(existingItemEntity.getItem(), itemStack, maxStackSize));
+    setVirtualCount(
+        existingItemEntity,
+        (long) getVirtualCount(existingItemEntity)
+            + getVirtualCount(itemEntity)
+            + itemStack.getCount());
+    setVirtualCount(itemEntity, 0);
+  }
+
+  public static boolean refill(
+      final ItemEntity itemEntity, final ItemEntityTracker itemEntityTracker) {
+    // Moves items from the virtual count into the real item stack, after it was partially picked
+    // up by a player or a hopper.
+    ItemStack itemStack = itemEntity.getItem();
+    int maxStackSize =
+        Math.min(
+            itemEntityTracker.getItemEntityConfig().maxStackSize, itemStack.getMaxStackSize());
+    if (itemEntity.isRemoved() || itemStack.isEmpty() || itemStack.getCount() >= maxStackSize) {
+      return false;
+    }
+    int virtualCount = getVirtualCount(itemEntity);
+    if (virtualCount <= 0) {
+      return false;
+    }
+    int refillCount = Math.min(virtualCount, maxStackSize - itemStack.getCount());
+    ItemStack refilledItemStack = itemStack.copy();
+    refilledItemStack.grow(refillCount);
+    itemEntity.setItem(refilledItemStack);
+    setVirtualCount(itemEntity, (long) virtualCount - refillCount);
+    itemEntityTracker.update(itemEntity);
+    return true;
+  }
+
+  public static void handleItemLeaveWorldEvent(
+      final ItemEntity itemEntity, final ItemEntityConfig itemEntityConfig) {
+    VirtualItemStack virtualItemStack = virtualItemStacks.remove(itemEntity.getId());
+    if (virtualItemStack == null) {
+      return;
+    }
+
+    // Unloaded item entities and item entities which are changing the dimension keep their virtual
+    // count within the persistent entity data.
+    Entity.RemovalReason removalReason = itemEntity.getRemovalReason();
+    if (removalReason == null || !removalReason.shouldDestroy()) {
+      if (virtualCountStorage != null) {
+        virtualCountStorage.unload(itemEntity);
+      }
+      return;
+    }
+    if (virtualCountStorage != null) {
+      virtualCountStorage.store(itemEntity, 0);
+    }
+
+    // Killed, evicted and despawned item entities are losing their virtual count. All other
+    // discarded item entities are split into a new item entity, because a hopper discards the
+    // item entity with its full item stack after inserting a copy of it.
+    if (removalReason != Entity.RemovalReason.DISCARDED || virtualItemStack.destroyed) {
+      return;
+    }
+
+    // The new item entity is spawned at the end of the tick, to avoid adding entities while the
+    // level is removing entities. The item stack of a picked up item entity could already be
+    // empty, so that the cached item stack is used.
+    ItemStack itemStack = virtualItemStack.itemStack.copy();
+    int maxStackSize = Math.min(itemEntityConfig.maxStackSize, itemStack.getMaxStackSize());
+    int splitCount = Math.min(virtualItemStack.virtualCount, maxStackSize);
+    itemStack.setCount(splitCount);
+    ItemEntity splitItemEntity =
+        new ItemEntity(
+            itemEntity.level, itemEntity.getX(), itemEntity.getY(), itemEntity.getZ(), itemStack);
+    splitItemEntity.setDeltaMovement(0, 0, 0);
+    setVirtualCount(splitItemEntity, (long) virtualItemStack.virtualCount - splitCount);
+    pendingItemEntities.add(splitItemEntity);
+  }
+
+  public static void handleServerTickEnd() {
+    // Refill partially picked up item stacks on every tick, independent of the remerge budget.
+    if (!virtualItemStacks.isEmpty()) {
+      refillItemStacks.addAll(virtualItemStacks.values());
+      for (VirtualItemStack virtualItemStack : refillItemStacks) {
+        refill(virtualItemStack);
+      }
+      refillItemStacks.clear();
+    }
+
+    if (pendingItemEntities.isEmpty()) {
+      return;
+    }
+    for (ItemEntity itemEntity : pendingItemEntities) {
+      if (itemEntity.level instanceof ServerLevel serverLevel) {
+        EventTracer.record(TraceEvent.ITEM_SPLIT, itemEntity, itemEntity.getItem().getCount());
+        serverLevel.addFreshEntity(itemEntity);
+      }
+    }
+    pendingItemEntities.clear();
+  }
+
+  private static void refill(final VirtualItemStack virtualItemStack) {
+    ItemEntity itemEntity = virtualItemStack.itemEntity;
+    if (itemEntity.isRemoved()
+        || itemEntity.getItem().getCount() >= virtualItemStack.itemStack.getMaxStackSize()
+        || !(itemEntity.level instanceof ServerLevel serverLevel)) {
+      return;
+    }
+    LevelTracker levelTracker = LevelTrackerManager.findLevelTracker(serverLevel);
+    if (levelTracker != null) {
+      refill(itemEntity, levelTracker.getItemEntityTracker());
+    }
+  }
+
+  public static void clear() {
+    virtualItemStacks.clear();
+    refillItemStacks.clear();
+    pendingItemEntities.clear();
+  }
+
+  private static class VirtualItemStack {
+    private final ItemEntity itemEntity;
+    private ItemStack itemStack;
+    private int virtualCount;
+    private boolean destroyed;
+
+    private VirtualItemStack(ItemEntity itemEntity, ItemStack itemStack, int virtualCount) {
+      this.itemEntity = itemEntity;
+      this.itemStack = itemStack.copy();
+      this.virtualCount = virtualCount;
+    }
+
+    private void setItemStack(ItemStack itemStack) {
+      // Only the item and its tags are needed to split the item entity, so that the item stack is
+      // only copied if the item entity was empty when it got its virtual count.
+      if (this.itemStack.isEmpty() && !itemStack.isEmpty()) {
+        this.itemStack = itemStack.copy();
+      }
+    }
+  }
+}
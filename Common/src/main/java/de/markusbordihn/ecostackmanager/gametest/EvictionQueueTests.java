@@ -0,0 +1,99 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.gametest;
+
+import de.markusbordihn.ecostackmanager.tracker.EvictionQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import net.minecraft.core.BlockPos;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.item.ItemEntity;
+
+public class EvictionQueueTests {
+
+  private static final int NUMBER_OF_ITEM_ENTITIES = 256;
+  private static final long SEED = 42L;
+
+  private EvictionQueueTests() {}
+
+  public static void testHeapOrderAfterUpdateAndRemove(GameTestHelper helper) {
+    ServerLevel serverLevel = helper.getLevel();
+    BlockPos origin = helper.absolutePos(BlockPos.ZERO);
+    Random random = new Random(SEED);
+    EvictionQueue evictionQueue = new EvictionQueue();
+    List<ItemEntity> itemEntities = new ArrayList<>();
+    for (int i = 0; i < NUMBER_OF_ITEM_ENTITIES; i++) {
+      ItemEntity itemEntity = ItemEntityTrackerTests.createItemEntity(serverLevel, origin, 1);
+      evictionQueue.add(itemEntity, random.nextInt(1000));
+      itemEntities.add(itemEntity);
+    }
+    GameTestHelpers.checkEquals(
+        helper,
+        "All item entities should be queued!",
+        NUMBER_OF_ITEM_ENTITIES,
+        evictionQueue.size());
+
+    // Update the priority of every second and remove every third item entity.
+    int numberOfItemEntities = NUMBER_OF_ITEM_ENTITIES;
+    for (int i = 0; i < NUMBER_OF_ITEM_ENTITIES; i++) {
+      ItemEntity itemEntity = itemEntities.get(i);
+      if (i % 3 == 0) {
+        GameTestHelpers.check(
+            helper, "Queued item entity should be removed!", evictionQueue.remove(itemEntity));
+        GameTestHelpers.check(
+            helper,
+            "Removed item entity should not be queued!",
+            !evictionQueue.contains(itemEntity));
+        numberOfItemEntities--;
+      } else if (i % 2 == 0) {
+        long priority = random.nextInt(1000);
+        evictionQueue.update(itemEntity, priority);
+        GameTestHelpers.checkEquals(
+            helper, "Priority should be updated!", priority, evictionQueue.getPriority(itemEntity));
+      }
+    }
+    GameTestHelpers.checkEquals(
+        helper,
+        "Removed item entities should not be counted!",
+        numberOfItemEntities,
+        evictionQueue.size());
+    GameTestHelpers.check(
+        helper,
+        "Unknown item entities should not be removed!",
+        !evictionQueue.remove(itemEntities.get(0)));
+
+    // The head of the queue is always the item entity with the lowest priority.
+    long lastPriority = Long.MIN_VALUE;
+    while (!evictionQueue.isEmpty()) {
+      ItemEntity itemEntity = evictionQueue.peek();
+      long priority = evictionQueue.getPriority(itemEntity);
+      GameTestHelpers.check(
+          helper, "Item entities should be evicted by priority!", priority >= lastPriority);
+      evictionQueue.remove(itemEntity);
+      lastPriority = priority;
+      numberOfItemEntities--;
+    }
+    GameTestHelpers.checkEquals(
+        helper, "All item entities should be evicted!", 0, numberOfItemEntities);
+    helper.succeed();
+  }
+}
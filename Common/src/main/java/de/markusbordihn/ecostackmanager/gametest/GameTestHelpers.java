@@ -41,4 +41,19 @@ public class GameTestHelpers {
   public static void assertNotNull(GameTestHelper helper, String message, Object object) {
     assertTrue(helper, message, object != null);
   }
+
+  // Checks are failing the test without succeeding it, so that several checks could be combined
+  // before the final succeed.
+  public static void check(GameTestHelper helper, String message, boolean condition) {
+    if (!condition) {
+      helper.fail(message);
+    }
+  }
+
+  public static void checkEquals(
+      GameTestHelper helper, String message, long expected, long actual) {
+    if (expected != actual) {
+      helper.fail(message + " Expected " + expected + " but got " + actual + ".");
+    }
+  }
 }
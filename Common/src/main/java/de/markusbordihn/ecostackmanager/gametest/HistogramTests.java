@@ -0,0 +1,76 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.gametest;
+
+import de.markusbordihn.ecostackmanager.metrics.Histogram;
+import net.minecraft.gametest.framework.GameTestHelper;
+
+public class HistogramTests {
+
+  private HistogramTests() {}
+
+  public static void testBucketEdges(GameTestHelper helper) {
+    // A single value is reported as the upper bound of its power of two bucket.
+    long[][] expectedUpperBounds = {
+      {-1, 0},
+      {0, 0},
+      {1, 1},
+      {2, 3},
+      {3, 3},
+      {4, 7},
+      {1023, 1023},
+      {1024, 2047},
+      {Long.MAX_VALUE, Long.MAX_VALUE}
+    };
+    Histogram histogram = new Histogram();
+    for (long[] expectedUpperBound : expectedUpperBounds) {
+      histogram.reset();
+      histogram.record(expectedUpperBound[0]);
+      GameTestHelpers.checkEquals(
+          helper,
+          "Value " + expectedUpperBound[0] + " should be in the bucket up to "
+              + expectedUpperBound[1] + "!",
+          expectedUpperBound[1],
+          histogram.getPercentile(1.0));
+    }
+
+    // Percentiles are taken from the cumulative bucket counts.
+    histogram.reset();
+    for (int i = 0; i < 99; i++) {
+      histogram.record(5);
+    }
+    histogram.record(1000);
+    GameTestHelpers.checkEquals(helper, "Values should be counted!", 100, histogram.getCount());
+    GameTestHelpers.checkEquals(helper, "Values should be summed up!", 1495, histogram.getSum());
+    GameTestHelpers.checkEquals(
+        helper, "p50 should be in the bucket of 5!", 7, histogram.getPercentile(0.5));
+    GameTestHelpers.checkEquals(
+        helper, "p99 should be in the bucket of 5!", 7, histogram.getPercentile(0.99));
+    GameTestHelpers.checkEquals(
+        helper, "p100 should be in the bucket of 1000!", 1023, histogram.getPercentile(1.0));
+
+    // Reset histograms are empty.
+    histogram.reset();
+    GameTestHelpers.checkEquals(helper, "Reset should clear the count!", 0, histogram.getCount());
+    GameTestHelpers.checkEquals(
+        helper, "Empty histograms should report 0!", 0, histogram.getPercentile(0.99));
+    helper.succeed();
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.gametest;
+
+import de.markusbordihn.ecostackmanager.config.ItemEntityConfig;
+import de.markusbordihn.ecostackmanager.entity.ItemEntityConsolidator;
+import de.markusbordihn.ecostackmanager.entity.ItemEntityManager;
+import de.markusbordihn.ecostackmanager.metrics.LevelMetrics;
+import de.markusbordihn.ecostackmanager.server.AdaptiveController;
+import de.markusbordihn.ecostackmanager.tracker.EvictionQueue;
+import de.markusbordihn.ecostackmanager.tracker.ItemEntityTracker;
+import de.markusbordihn.ecostackmanager.tracker.MergeTargetSelection;
+import de.markusbordihn.ecostackmanager.tracker.SkyVisibilityCache;
+import java.util.ArrayList;
+import java.util.List;
+import net.minecraft.core.BlockPos;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+
+public class ItemEntityTrackerTests {
+
+  private ItemEntityTrackerTests() {}
+
+  public static void testRemergedItemEntityIsRemovedFromTypeQueue(GameTestHelper helper) {
+    ServerLevel serverLevel = helper.getLevel();
+    BlockPos origin = helper.absolutePos(BlockPos.ZERO);
+    ItemEntityTracker itemEntityTracker = createItemEntityTracker(serverLevel);
+
+    // Both item entities are tracked, like item entities which drifted together.
+    ItemEntity itemEntity = createItemEntity(serverLevel, origin, 8);
+    ItemEntity otherItemEntity = createItemEntity(serverLevel, origin, 16);
+    EvictionQueue itemTypeEntities = itemEntityTracker.add(itemEntity, Items.COBBLESTONE);
+    itemEntityTracker.add(otherItemEntity, Items.COBBLESTONE);
+    GameTestHelpers.checkEquals(
+        helper, "Both item entities should be tracked!", 2, itemTypeEntities.size());
+
+    // The remerge pass empties and discards the merged item entity, before the leave handler
+    // removes it from the tracker.
+    ItemEntity mergedItemEntity =
+        ItemEntityManager.mergeWithNearbyItemEntity(
+            itemEntity, itemEntityTracker, false, MergeTargetSelection.FIRST_FOUND);
+    GameTestHelpers.check(
+        helper, "Tracked item entities should be merged!", mergedItemEntity == otherItemEntity);
+    GameTestHelpers.check(
+        helper,
+        "Merged item entity should be discarded with an empty item stack!",
+        itemEntity.isRemoved() && itemEntity.getItem().isEmpty());
+    GameTestHelpers.check(
+        helper, "Merged item entity should be removed!", itemEntityTracker.remove(itemEntity));
+    GameTestHelpers.checkEquals(
+        helper, "Type queue should only contain the target!", 1, itemTypeEntities.size());
+    GameTestHelpers.checkEquals(
+        helper, "World queue should only contain the target!", 1, itemEntityTracker.size());
+
+    // A second removal, like the sweep of an already removed item entity, changes nothing.
+    GameTestHelpers.check(
+        helper,
+        "Merged item entity should only be removed once!",
+        !itemEntityTracker.remove(itemEntity));
+    itemEntityTracker.remove(otherItemEntity);
+    GameTestHelpers.checkEquals(helper, "Type queue should be empty!", 0, itemTypeEntities.size());
+    itemEntityTracker.clear();
+    helper.succeed();
+  }
+
+  public static void testConsolidatedItemEntityIsRemovedFromTypeQueue(GameTestHelper helper) {
+    ServerLevel serverLevel = helper.getLevel();
+    BlockPos origin = helper.absolutePos(BlockPos.ZERO);
+    ItemEntityTracker itemEntityTracker = createItemEntityTracker(serverLevel);
+
+    // Three partial stacks with 5/8 of the max stack size are repacked into two stacks, like 40 +
+    // 40 + 40 cobblestone into 64 + 56 cobblestone.
+    int count = Math.min(64, itemEntityTracker.getItemEntityConfig().maxStackSize) * 5 / 8;
+    List<ItemEntity> itemEntities = new ArrayList<>();
+    EvictionQueue itemTypeEntities = null;
+    for (int i = 0; i < 3; i++) {
+      ItemEntity itemEntity = createItemEntity(serverLevel, origin, count);
+      itemTypeEntities = itemEntityTracker.add(itemEntity, Items.COBBLESTONE);
+      itemEntities.add(itemEntity);
+    }
+    int numberOfConsolidatedItemEntities =
+        ItemEntityConsolidator.consolidate(itemEntities, 0, itemEntities.size(), itemEntityTracker);
+    GameTestHelpers.checkEquals(
+        helper, "One item entity should be consolidated!", 1, numberOfConsolidatedItemEntities);
+    GameTestHelpers.checkEquals(
+        helper, "Type queue should not contain the emptied stack!", 2, itemTypeEntities.size());
+    GameTestHelpers.checkEquals(
+        helper, "World queue should not contain the emptied stack!", 2, itemEntityTracker.size());
+
+    // The leave event of the emptied item entity is not changing the tracker anymore.
+    for (ItemEntity itemEntity : itemEntities) {
+      if (itemEntity.isRemoved()) {
+        GameTestHelpers.check(
+            helper,
+            "Emptied item entity should already be removed!",
+            !itemEntityTracker.remove(itemEntity));
+      }
+    }
+    itemEntityTracker.clear();
+    helper.succeed();
+  }
+
+  static ItemEntityTracker createItemEntityTracker(ServerLevel serverLevel) {
+    ItemEntityConfig itemEntityConfig = ItemEntityConfig.get();
+    return new ItemEntityTracker(
+        serverLevel,
+        Math.max(1, AdaptiveController.getMaxItemCollectRadius(itemEntityConfig)),
+        new SkyVisibilityCache(serverLevel),
+        itemEntityConfig,
+        new LevelMetrics());
+  }
+
+  static ItemEntity createItemEntity(ServerLevel serverLevel, BlockPos blockPos, int count) {
+    // The item entities are not added to the level, so that only the tracker is affected, unless
+    // the caller adds them.
+    return new ItemEntity(
+        serverLevel,
+        blockPos.getX() + 0.5,
+        blockPos.getY() + 1.0,
+        blockPos.getZ() + 0.5,
+        new ItemStack(Items.COBBLESTONE, count));
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.gametest;
+
+import de.markusbordihn.ecostackmanager.Constants;
+import de.markusbordihn.ecostackmanager.entity.ItemEntityManager;
+import de.markusbordihn.ecostackmanager.tracker.ItemEntityTracker;
+import de.markusbordihn.ecostackmanager.tracker.MergeTargetSelection;
+import java.util.Random;
+import net.minecraft.core.BlockPos;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class MergeTargetBenchmark {
+
+  private static final Logger log = LogManager.getLogger(Constants.LOG_NAME);
+  private static final String LOG_PREFIX = "[Merge Target Benchmark]";
+  private static final int DROPS = 2_000;
+  private static final int DROP_AREA = 24;
+  private static final long SEED = 42L;
+
+  private MergeTargetBenchmark() {}
+
+  public static void run(GameTestHelper helper) {
+    ServerLevel serverLevel = helper.getLevel();
+    BlockPos origin = helper.absolutePos(BlockPos.ZERO);
+
+    // Replays the same drops for every selection and compares the remaining item entities with the
+    // first found candidate, which was the previous behavior.
+    int[] remainingItemEntities = new int[MergeTargetSelection.values().length];
+    for (MergeTargetSelection mergeTargetSelection : MergeTargetSelection.values()) {
+      remainingItemEntities[mergeTargetSelection.ordinal()] =
+          replayDrops(serverLevel, origin, mergeTargetSelection);
+    }
+    int firstFoundItemEntities = remainingItemEntities[MergeTargetSelection.FIRST_FOUND.ordinal()];
+    for (MergeTargetSelection mergeTargetSelection : MergeTargetSelection.values()) {
+      int numberOfItemEntities = remainingItemEntities[mergeTargetSelection.ordinal()];
+      log.info(
+          "{} {} drops with {}: {} item entities ({}% compared with first_found)",
+          LOG_PREFIX,
+          DROPS,
+          mergeTargetSelection.getName(),
+          numberOfItemEntities,
+          String.format(
+              "%+.1f",
+              100.0 * (numberOfItemEntities - firstFoundItemEntities) / firstFoundItemEntities));
+    }
+
+    // The scored selections should not leave more item entities than the first found candidate for
+    // the seeded drops.
+    for (MergeTargetSelection mergeTargetSelection : MergeTargetSelection.values()) {
+      if (mergeTargetSelection.isScored()) {
+        GameTestHelpers.check(
+            helper,
+            mergeTargetSelection.getName() + " should not leave more items than first_found!",
+            remainingItemEntities[mergeTargetSelection.ordinal()] <= firstFoundItemEntities);
+      }
+    }
+    helper.succeed();
+  }
+
+  private static int replayDrops(
+      ServerLevel serverLevel, BlockPos origin, MergeTargetSelection mergeTargetSelection) {
+    // The grid is sized like the grid of the level tracker, from the configured collect radius.
+    ItemEntityTracker itemEntityTracker =
+        ItemEntityTrackerTests.createItemEntityTracker(serverLevel);
+    Random random = new Random(SEED);
+    for (int i = 0; i < DROPS; i++) {
+      // The item entities are never added to the level, so that only the tracker is affected.
+      ItemEntity itemEntity =
+          new ItemEntity(
+              serverLevel,
+              origin.getX() + random.nextDouble() * DROP_AREA,
+              origin.getY() + 1.0,
+              origin.getZ() + random.nextDouble() * DROP_AREA,
+              new ItemStack(Items.COBBLESTONE, 1 + random.nextInt(40)));
+      if (ItemEntityManager.mergeWithNearbyItemEntity(
+              itemEntity, itemEntityTracker, false, mergeTargetSelection)
+          == null) {
+        itemEntityTracker.add(itemEntity, Items.COBBLESTONE);
+      }
+    }
+    int numberOfItemEntities = itemEntityTracker.size();
+    itemEntityTracker.clear();
+    return numberOfItemEntities;
+  }
+}
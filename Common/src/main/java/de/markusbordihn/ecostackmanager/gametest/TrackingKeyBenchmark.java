@@ -0,0 +1,136 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.gametest;
+
+import de.markusbordihn.ecostackmanager.Constants;
+import de.markusbordihn.ecostackmanager.tracker.ItemEntityTracker;
+import de.markusbordihn.ecostackmanager.tracker.LevelTrackerManager;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Registry;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.Items;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class TrackingKeyBenchmark {
+
+  private static final Logger log = LogManager.getLogger(Constants.LOG_NAME);
+  private static final String LOG_PREFIX = "[Tracking Key Benchmark]";
+  private static final int WARMUP_ITERATIONS = 20_000;
+  private static final int ITERATIONS = 100_000;
+
+  // Each tracker run handles a join, an update and a leave event of the same item entity.
+  private static final int EVENTS_PER_TRACKER_RUN = 3;
+
+  private static int benchmarkSink = 0;
+
+  private TrackingKeyBenchmark() {}
+
+  public static void run(GameTestHelper helper) {
+    ServerLevel serverLevel = helper.getLevel();
+    BlockPos origin = helper.absolutePos(BlockPos.ZERO);
+    Item item = Items.COBBLESTONE;
+
+    // Legacy tracking with String keys like "[minecraft:overworld]minecraft:cobblestone", which
+    // were built on every join and leave event.
+    Map<String, Object> legacyTrackingMap = new ConcurrentHashMap<>();
+    legacyTrackingMap.put(
+        '['
+            + serverLevel.dimension().location().toString()
+            + ']'
+            + Registry.ITEM.getKey(item).toString(),
+        item);
+    Runnable legacyLookup =
+        () -> {
+          String levelName = serverLevel.dimension().location().toString();
+          String itemName = Registry.ITEM.getKey(item).toString();
+          if (legacyTrackingMap.get('[' + levelName + ']' + itemName) != null) {
+            benchmarkSink++;
+          }
+        };
+
+    // The same join, update and leave calls on the item entity tracker of the level as the item
+    // entity manager. The anchor item entity keeps the grid cell and the chunk queues alive, so
+    // that only the per event allocations are measured.
+    ItemEntity anchorItemEntity = ItemEntityTrackerTests.createItemEntity(serverLevel, origin, 1);
+    ItemEntity itemEntity = ItemEntityTrackerTests.createItemEntity(serverLevel, origin, 1);
+    LevelTrackerManager.getLevelTracker(serverLevel)
+        .getItemEntityTracker()
+        .add(anchorItemEntity, item);
+    Runnable trackerEvents =
+        () -> {
+          ItemEntityTracker itemEntityTracker =
+              LevelTrackerManager.getLevelTracker(serverLevel).getItemEntityTracker();
+          itemEntityTracker.add(itemEntity, item);
+          itemEntityTracker.update(itemEntity);
+          ItemEntityTracker leaveItemEntityTracker =
+              LevelTrackerManager.findLevelTracker(serverLevel).getItemEntityTracker();
+          if (leaveItemEntityTracker.remove(itemEntity)) {
+            benchmarkSink++;
+          }
+        };
+
+    double legacyBytesPerEvent = measureAllocatedBytesPerRun(legacyLookup);
+    double trackerBytesPerEvent =
+        measureAllocatedBytesPerRun(trackerEvents) / EVENTS_PER_TRACKER_RUN;
+    ItemEntityTracker itemEntityTracker =
+        LevelTrackerManager.getLevelTracker(serverLevel).getItemEntityTracker();
+    itemEntityTracker.remove(anchorItemEntity);
+    log.info(
+        "{} Allocation per event: {} bytes for a String key, {} bytes with the tracker ({})",
+        LOG_PREFIX,
+        String.format("%.1f", legacyBytesPerEvent),
+        String.format("%.1f", trackerBytesPerEvent),
+        benchmarkSink);
+
+    // Measurement is not supported by every JVM, in this case only the result is logged.
+    if (legacyBytesPerEvent < 0 || trackerBytesPerEvent < 0) {
+      helper.succeed();
+      return;
+    }
+    GameTestHelpers.assertTrue(
+        helper,
+        "Tracker join, update and leave should allocate less than a String tracking key!",
+        trackerBytesPerEvent < legacyBytesPerEvent);
+  }
+
+  private static double measureAllocatedBytesPerRun(Runnable runnable) {
+    if (!(ManagementFactory.getThreadMXBean()
+        instanceof com.sun.management.ThreadMXBean threadMXBean)) {
+      return -1;
+    }
+    long threadId = Thread.currentThread().getId();
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      runnable.run();
+    }
+    long allocatedBytesStart = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < ITERATIONS; i++) {
+      runnable.run();
+    }
+    long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBytesStart;
+    return allocatedBytes < 0 ? -1 : (double) allocatedBytes / ITERATIONS;
+  }
+}
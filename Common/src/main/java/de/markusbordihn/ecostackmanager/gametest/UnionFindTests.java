@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.gametest;
+
+import de.markusbordihn.ecostackmanager.utils.UnionFind;
+import java.util.Random;
+import net.minecraft.gametest.framework.GameTestHelper;
+
+public class UnionFindTests {
+
+  private static final int NUMBER_OF_ELEMENTS = 64;
+  private static final int NUMBER_OF_UNIONS = 48;
+  private static final long SEED = 42L;
+
+  private UnionFindTests() {}
+
+  public static void testConnectivity(GameTestHelper helper) {
+    // Compares the union find with a naive labeling, which relabels the whole set on every union.
+    Random random = new Random(SEED);
+    UnionFind unionFind = new UnionFind(NUMBER_OF_ELEMENTS);
+    int[] labels = new int[NUMBER_OF_ELEMENTS];
+    for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+      labels[i] = i;
+    }
+    for (int i = 0; i < NUMBER_OF_UNIONS; i++) {
+      int elementA = random.nextInt(NUMBER_OF_ELEMENTS);
+      int elementB = random.nextInt(NUMBER_OF_ELEMENTS);
+      unionFind.union(elementA, elementB);
+      int labelA = labels[elementA];
+      int labelB = labels[elementB];
+      for (int j = 0; j < NUMBER_OF_ELEMENTS; j++) {
+        if (labels[j] == labelB) {
+          labels[j] = labelA;
+        }
+      }
+    }
+
+    for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+      int root = unionFind.find(i);
+      GameTestHelpers.check(
+          helper, "Roots should be their own root!", unionFind.find(root) == root);
+      for (int j = 0; j < NUMBER_OF_ELEMENTS; j++) {
+        GameTestHelpers.check(
+            helper,
+            "Elements " + i + " and " + j + " should only share a root if they are connected!",
+            (root == unionFind.find(j)) == (labels[i] == labels[j]));
+      }
+    }
+    helper.succeed();
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.gametest;
+
+import de.markusbordihn.ecostackmanager.entity.VirtualItemStackManager;
+import net.minecraft.core.BlockPos;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.HopperBlockEntity;
+
+public class VirtualItemStackTests {
+
+  private static final BlockPos HOPPER_POS = new BlockPos(1, 1, 1);
+
+  private VirtualItemStackTests() {}
+
+  public static void testHopperPickupSplitsVirtualCount(GameTestHelper helper) {
+    ServerLevel serverLevel = helper.getLevel();
+    helper.setBlock(HOPPER_POS, Blocks.HOPPER);
+
+    // The carrier is placed right above the hopper with 16 real and 32 virtual items.
+    ItemEntity itemEntity =
+        ItemEntityTrackerTests.createItemEntity(serverLevel, helper.absolutePos(HOPPER_POS), 16);
+    itemEntity.setDeltaMovement(0, 0, 0);
+    serverLevel.addFreshEntity(itemEntity);
+    VirtualItemStackManager.setVirtualCount(itemEntity, 32);
+    GameTestHelpers.checkEquals(
+        helper,
+        "Carrier should have a virtual count!",
+        32,
+        VirtualItemStackManager.getVirtualCount(itemEntity));
+
+    // The hopper inserts a copy of the real item stack and discards the carrier with its item
+    // stack, so that the virtual count is only collected if it was split into a new item entity.
+    helper.succeedWhen(
+        () -> {
+          HopperBlockEntity hopperBlockEntity = helper.getBlockEntity(HOPPER_POS);
+          int count = 0;
+          for (int i = 0; i < hopperBlockEntity.getContainerSize(); i++) {
+            ItemStack itemStack = hopperBlockEntity.getItem(i);
+            count += itemStack.getCount();
+          }
+          GameTestHelpers.checkEquals(
+              helper, "Hopper should contain the real and the virtual items!", 48, count);
+        });
+  }
+}
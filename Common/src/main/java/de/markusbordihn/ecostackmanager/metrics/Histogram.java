@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public final class Histogram {
+
+  // Values are recorded into power of two buckets, so that recording only needs a bit operation
+  // and the percentiles are accurate within a factor of two.
+  private static final int NUMBER_OF_BUCKETS = 64;
+
+  private final LongAdder[] buckets = new LongAdder[NUMBER_OF_BUCKETS];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+
+  public Histogram() {
+    for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+      this.buckets[i] = new LongAdder();
+    }
+  }
+
+  public void record(final long value) {
+    long positiveValue = Math.max(0, value);
+    this.buckets[Math.min(NUMBER_OF_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(positiveValue))]
+        .increment();
+    this.count.increment();
+    this.sum.add(positiveValue);
+  }
+
+  public long getCount() {
+    return this.count.sum();
+  }
+
+  public long getSum() {
+    return this.sum.sum();
+  }
+
+  public double getMean() {
+    long numberOfValues = getCount();
+    return numberOfValues > 0 ? (double) getSum() / numberOfValues : 0;
+  }
+
+  public long getPercentile(double percentile) {
+    // Returns the upper bound of the bucket, which contains the given percentile.
+    long numberOfValues = getCount();
+    if (numberOfValues <= 0) {
+      return 0;
+    }
+    long threshold = (long) Math.ceil(numberOfValues * Math.min(1, Math.max(0, percentile)));
+    long numberOfBucketValues = 0;
+    for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+      numberOfBucketValues += this.buckets[i].sum();
+      if (numberOfBucketValues >= threshold) {
+        return i == 0 ? 0 : (1L << i) - 1;
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  public void reset() {
+    for (LongAdder bucket : this.buckets) {
+      bucket.reset();
+    }
+    this.count.reset();
+    this.sum.reset();
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.metrics;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.core.Registry;
+import net.minecraft.world.item.Item;
+
+public final class LevelMetrics {
+
+  public final MetricCounters itemEntities = new MetricCounters();
+  public final MetricCounters experienceOrbs = new MetricCounters();
+
+  // Number of merge candidates which were compared per merge candidate search.
+  public final Histogram itemMergeCandidates = new Histogram();
+  public final Histogram experienceOrbMergeCandidates = new Histogram();
+
+  // Nanoseconds spent per handler call.
+  public final Histogram itemJoinNanos = new Histogram();
+  public final Histogram experienceOrbJoinNanos = new Histogram();
+  public final Histogram batchMergeNanos = new Histogram();
+  public final Histogram remergeNanos = new Histogram();
+
+  // Item types are indexed by their registry id, like the item entity tracker.
+  private final Int2ObjectMap<MetricCounters> itemTypes = new Int2ObjectOpenHashMap<>();
+
+  public MetricCounters getItemType(Item item) {
+    return this.itemTypes.computeIfAbsent(Registry.ITEM.getId(item), k -> new MetricCounters());
+  }
+
+  public Int2ObjectMap<MetricCounters> getItemTypes() {
+    return this.itemTypes;
+  }
+
+  public void reset() {
+    this.itemEntities.reset();
+    this.experienceOrbs.reset();
+    this.itemMergeCandidates.reset();
+    this.experienceOrbMergeCandidates.reset();
+    this.itemJoinNanos.reset();
+    this.experienceOrbJoinNanos.reset();
+    this.batchMergeNanos.reset();
+    this.remergeNanos.reset();
+    this.itemTypes.clear();
+  }
+}
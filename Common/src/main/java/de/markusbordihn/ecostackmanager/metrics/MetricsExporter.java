@@ -0,0 +1,227 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.metrics;
+
+import de.markusbordihn.ecostackmanager.Constants;
+import de.markusbordihn.ecostackmanager.config.Config;
+import de.markusbordihn.ecostackmanager.config.MetricsConfig;
+import de.markusbordihn.ecostackmanager.server.AdaptiveController;
+import de.markusbordihn.ecostackmanager.tracker.LevelTracker;
+import de.markusbordihn.ecostackmanager.tracker.LevelTrackerManager;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import net.minecraft.server.MinecraftServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class MetricsExporter implements Runnable {
+
+  private static final Logger log = LogManager.getLogger(Constants.LOG_NAME);
+  private static final String LOG_PREFIX = "[Metrics Exporter]";
+
+  private static final String FILE_NAME = "metrics";
+  private static final String FILE_EXTENSION = ".jsonl";
+  private static final int TICKS_PER_SECOND = 20;
+
+  // Snapshots are dropped instead of blocking the server thread, if the exporter thread is behind.
+  private static final BlockingQueue<String> pendingSnapshots = new ArrayBlockingQueue<>(64);
+
+  private static Thread exporterThread = null;
+  private static int lastExportTick = 0;
+  private static long droppedSnapshots = 0;
+
+  private MetricsExporter() {}
+
+  public static void handleServerTick(final MinecraftServer minecraftServer) {
+    int exportInterval = MetricsConfig.get().exportInterval;
+    if (exportInterval <= 0) {
+      return;
+    }
+    int tickCount = minecraftServer.getTickCount();
+    if (tickCount - lastExportTick < exportInterval * TICKS_PER_SECOND) {
+      return;
+    }
+    lastExportTick = tickCount;
+    start();
+
+    // The snapshot is created on the server thread, because the trackers are not thread-safe, and
+    // only the file access is done by the exporter thread.
+    if (!pendingSnapshots.offer(createSnapshot(tickCount))) {
+      droppedSnapshots++;
+      log.warn("{} Dropped metrics snapshot (total: {})", LOG_PREFIX, droppedSnapshots);
+    }
+  }
+
+  public static void handleServerStopped() {
+    lastExportTick = 0;
+  }
+
+  private static synchronized void start() {
+    if (exporterThread != null) {
+      return;
+    }
+    exporterThread = new Thread(new MetricsExporter(), Constants.MOD_NAME + " Metrics Exporter");
+    exporterThread.setDaemon(true);
+    exporterThread.start();
+  }
+
+  private static String createSnapshot(final int tickCount) {
+    // The counters are exported as totals, so that lost snapshots are not affecting the next ones.
+    StringBuilder snapshot = new StringBuilder(1024);
+    snapshot
+        .append("{\"time\":")
+        .append(System.currentTimeMillis())
+        .append(",\"tick\":")
+        .append(tickCount)
+        .append(",\"tick_time\":")
+        .append(String.format(Locale.ROOT, "%.2f", AdaptiveController.getTickTime()))
+        .append(",\"pressure\":")
+        .append(String.format(Locale.ROOT, "%.2f", AdaptiveController.getPressure()))
+        .append(",\"levels\":[");
+    boolean firstLevel = true;
+    for (LevelTracker levelTracker : LevelTrackerManager.getLevelTrackers()) {
+      LevelMetrics levelMetrics = levelTracker.getLevelMetrics();
+      if (!firstLevel) {
+        snapshot.append(',');
+      }
+      firstLevel = false;
+      snapshot
+          .append("{\"level\":\"")
+          .append(levelTracker.getServerLevel().dimension().location())
+          .append("\",\"item_entities\":")
+          .append(levelTracker.getItemEntityTracker().size())
+          .append(",\"experience_orbs\":")
+          .append(levelTracker.getExperienceOrbSectionIndex().size());
+      appendCounters(snapshot, "item", levelMetrics.itemEntities);
+      appendCounters(snapshot, "experience_orb", levelMetrics.experienceOrbs);
+      appendHistogram(snapshot, "item_merge_candidates", levelMetrics.itemMergeCandidates);
+      appendHistogram(
+          snapshot, "experience_orb_merge_candidates", levelMetrics.experienceOrbMergeCandidates);
+      appendHistogram(snapshot, "item_join_nanos", levelMetrics.itemJoinNanos);
+      appendHistogram(snapshot, "experience_orb_join_nanos", levelMetrics.experienceOrbJoinNanos);
+      appendHistogram(snapshot, "batch_merge_nanos", levelMetrics.batchMergeNanos);
+      appendHistogram(snapshot, "remerge_nanos", levelMetrics.remergeNanos);
+      snapshot.append('}');
+    }
+    return snapshot.append("]}\n").toString();
+  }
+
+  private static void appendCounters(
+      final StringBuilder snapshot, final String prefix, final MetricCounters metricCounters) {
+    snapshot
+        .append(",\"")
+        .append(prefix)
+        .append("_joins\":")
+        .append(metricCounters.joins.sum())
+        .append(",\"")
+        .append(prefix)
+        .append("_merges\":")
+        .append(metricCounters.merges.sum())
+        .append(",\"")
+        .append(prefix)
+        .append("_evictions\":")
+        .append(metricCounters.evictions.sum());
+  }
+
+  private static void appendHistogram(
+      final StringBuilder snapshot, final String name, final Histogram histogram) {
+    snapshot
+        .append(",\"")
+        .append(name)
+        .append("\":{\"count\":")
+        .append(histogram.getCount())
+        .append(",\"sum\":")
+        .append(histogram.getSum())
+        .append(",\"p50\":")
+        .append(histogram.getPercentile(0.5))
+        .append(",\"p99\":")
+        .append(histogram.getPercentile(0.99))
+        .append('}');
+  }
+
+  private static Path getExportDirectory(final MetricsConfig metricsConfig) throws IOException {
+    if (metricsConfig.exportDirectory.isBlank()) {
+      return Config.getConfigDirectory();
+    }
+    return Files.createDirectories(Paths.get(metricsConfig.exportDirectory.trim()));
+  }
+
+  private static void export(final String snapshot) throws IOException {
+    MetricsConfig metricsConfig = MetricsConfig.get();
+    Path exportDirectory = getExportDirectory(metricsConfig);
+    if (exportDirectory == null) {
+      return;
+    }
+
+    // Rotate the export file, before it would exceed the max file size.
+    byte[] data = snapshot.getBytes(StandardCharsets.UTF_8);
+    Path exportFile = exportDirectory.resolve(FILE_NAME + FILE_EXTENSION);
+    if (Files.exists(exportFile)
+        && Files.size(exportFile) + data.length > metricsConfig.exportMaxFileSize * 1024L) {
+      rotate(exportDirectory, exportFile, metricsConfig.exportMaxFiles);
+    }
+    Files.write(exportFile, data, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  private static void rotate(final Path exportDirectory, final Path exportFile, final int maxFiles)
+      throws IOException {
+    // Rotated files are numbered from the newest (1) to the oldest (maxFiles).
+    Files.deleteIfExists(exportDirectory.resolve(FILE_NAME + "." + maxFiles + FILE_EXTENSION));
+    for (int i = maxFiles - 1; i >= 1; i--) {
+      Path rotatedFile = exportDirectory.resolve(FILE_NAME + "." + i + FILE_EXTENSION);
+      if (Files.exists(rotatedFile)) {
+        Files.move(
+            rotatedFile,
+            exportDirectory.resolve(FILE_NAME + "." + (i + 1) + FILE_EXTENSION),
+            StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    if (maxFiles > 0) {
+      Files.move(
+          exportFile,
+          exportDirectory.resolve(FILE_NAME + ".1" + FILE_EXTENSION),
+          StandardCopyOption.REPLACE_EXISTING);
+    } else {
+      Files.delete(exportFile);
+    }
+  }
+
+  @Override
+  public void run() {
+    log.info("{} Started metrics export", LOG_PREFIX);
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        export(pendingSnapshots.take());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (IOException | RuntimeException e) {
+        log.error("{} Unable to export metrics snapshot: {}", LOG_PREFIX, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.server;
+
+import de.markusbordihn.ecostackmanager.Constants;
+import de.markusbordihn.ecostackmanager.config.AdaptiveControllerConfig;
+import de.markusbordihn.ecostackmanager.config.ExperienceOrbConfig;
+import de.markusbordihn.ecostackmanager.config.ItemEntityConfig;
+import net.minecraft.server.MinecraftServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class AdaptiveController {
+
+  private static final Logger log = LogManager.getLogger(Constants.LOG_NAME);
+  private static final String LOG_PREFIX = "[Adaptive Controller]";
+
+  // The pressure is raised faster than it is lowered, to react quickly on lag spikes without
+  // flapping between both states.
+  private static final double TIGHTEN_STEP = 0.2;
+  private static final double RELAX_STEP = 0.05;
+
+  private static double pressure = 0;
+  private static float tickTime = 0;
+  private static float tickTimeSum = 0;
+  private static int tickTimeSamples = 0;
+
+  private AdaptiveController() {}
+
+  public static void handleServerTick(final MinecraftServer minecraftServer) {
+    AdaptiveControllerConfig adaptiveControllerConfig = AdaptiveControllerConfig.get();
+    if (!adaptiveControllerConfig.enabled) {
+      return;
+    }
+
+    // Sample the tick time on every tick, but only adjust the pressure once per interval.
+    tickTimeSum += minecraftServer.getAverageTickTime();
+    if (++tickTimeSamples < Math.max(1, adaptiveControllerConfig.adjustmentInterval)) {
+      return;
+    }
+    tickTime = tickTimeSum / tickTimeSamples;
+    tickTimeSum = 0;
+    tickTimeSamples = 0;
+
+    double lastPressure = pressure;
+    if (tickTime >= adaptiveControllerConfig.highTickTime) {
+      pressure = Math.min(1, pressure + TIGHTEN_STEP);
+    } else if (tickTime <= adaptiveControllerConfig.lowTickTime) {
+      pressure = Math.max(0, pressure - RELAX_STEP);
+    }
+    if (pressure != lastPressure && log.isDebugEnabled()) {
+      log.debug(
+          "{} {} ms tick time, changed pressure from {} to {}",
+          LOG_PREFIX,
+          tickTime,
+          lastPressure,
+          pressure);
+    }
+  }
+
+  public static void reset() {
+    pressure = 0;
+    tickTime = 0;
+    tickTimeSum = 0;
+    tickTimeSamples = 0;
+  }
+
+  public static boolean isEnabled() {
+    return AdaptiveControllerConfig.get().enabled;
+  }
+
+  public static double getPressure() {
+    return isEnabled() ? pressure : 0;
+  }
+
+  public static float getTickTime() {
+    return tickTime;
+  }
+
+  public static int getItemCollectRadius(final ItemEntityConfig itemEntityConfig) {
+    return getRadius(
+        itemEntityConfig.collectRadius, AdaptiveControllerConfig.get().maxItemCollectRadius);
+  }
+
+  public static int getMaxItemCollectRadius(final ItemEntityConfig itemEntityConfig) {
+    // Upper bound of the item collect radius, which is used as cell size of the item grid.
+    int collectRadius = itemEntityConfig.collectRadius;
+    return isEnabled() && collectRadius > 0
+        ? Math.max(collectRadius, AdaptiveControllerConfig.get().maxItemCollectRadius)
+        : collectRadius;
+  }
+
+  public static int getExperienceOrbCollectRadius(final ExperienceOrbConfig experienceOrbConfig) {
+    return getRadius(
+        experienceOrbConfig.collectRadius,
+        AdaptiveControllerConfig.get().maxExperienceOrbCollectRadius);
+  }
+
+  public static int getMaxNumberOfItemsPerWorld(final ItemEntityConfig itemEntityConfig) {
+    return getItemLimit(itemEntityConfig.maxNumberOfItemsPerWorld);
+  }
+
+  public static int getMaxNumberOfItemsPerType(final ItemEntityConfig itemEntityConfig) {
+    return getItemLimit(itemEntityConfig.maxNumberOfItemsPerType);
+  }
+
+  public static int getMaxNumberOfItemsPerChunk(final ItemEntityConfig itemEntityConfig) {
+    return getItemLimit(itemEntityConfig.maxNumberOfItemsPerChunk);
+  }
+
+  public static int getMaxNumberOfItemsPerRegion(final ItemEntityConfig itemEntityConfig) {
+    return getItemLimit(itemEntityConfig.maxNumberOfItemsPerRegion);
+  }
+
+  public static int getItemVerificationEntriesPerTick(final ItemEntityConfig itemEntityConfig) {
+    return getVerificationEntriesPerTick(itemEntityConfig.verificationEntriesPerTick);
+  }
+
+  public static int getExperienceOrbVerificationEntriesPerTick(
+      final ExperienceOrbConfig experienceOrbConfig) {
+    return getVerificationEntriesPerTick(experienceOrbConfig.verificationEntriesPerTick);
+  }
+
+  private static int getRadius(final int collectRadius, final int maxCollectRadius) {
+    // Disabled merging stays disabled, regardless of the current pressure.
+    if (collectRadius <= 0) {
+      return collectRadius;
+    }
+    return interpolate(collectRadius, Math.max(collectRadius, maxCollectRadius));
+  }
+
+  private static int getItemLimit(final int itemLimit) {
+    // Disabled limits stay disabled, regardless of the current pressure.
+    if (itemLimit <= 0) {
+      return itemLimit;
+    }
+    int minItemLimit = itemLimit * AdaptiveControllerConfig.get().minItemLimitPercentage / 100;
+    return interpolate(itemLimit, Math.max(1, Math.min(itemLimit, minItemLimit)));
+  }
+
+  private static int getVerificationEntriesPerTick(final int verificationEntriesPerTick) {
+    if (verificationEntriesPerTick <= 0) {
+      return verificationEntriesPerTick;
+    }
+    return interpolate(
+        verificationEntriesPerTick,
+        Math.max(
+            verificationEntriesPerTick,
+            AdaptiveControllerConfig.get().maxVerificationEntriesPerTick));
+  }
+
+  private static int interpolate(final int value, final int boundValue) {
+    double currentPressure = getPressure();
+    if (currentPressure <= 0) {
+      return value;
+    }
+    return value + (int) Math.round((boundValue - value) * currentPressure);
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.server;
+
+import de.markusbordihn.ecostackmanager.Constants;
+import de.markusbordihn.ecostackmanager.config.ConfigSnapshot;
+import de.markusbordihn.ecostackmanager.entity.ItemEntityBatchMerger;
+import de.markusbordihn.ecostackmanager.entity.ItemEntityRemerger;
+import de.markusbordihn.ecostackmanager.entity.ItemPolicyTable;
+import de.markusbordihn.ecostackmanager.entity.VirtualItemStackManager;
+import de.markusbordihn.ecostackmanager.metrics.MetricsExporter;
+import de.markusbordihn.ecostackmanager.tracker.LevelTracker;
+import de.markusbordihn.ecostackmanager.tracker.LevelTrackerManager;
+import de.markusbordihn.ecostackmanager.tracker.TrackerSweeper;
+import net.minecraft.server.MinecraftServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class ServerTickManager {
+
+  private static final Logger log = LogManager.getLogger(Constants.LOG_NAME);
+  private static final String LOG_PREFIX = "[Server Tick Manager]";
+
+  private static ConfigSnapshot configSnapshot = null;
+
+  private ServerTickManager() {}
+
+  public static void handleServerTickEnd(final MinecraftServer minecraftServer) {
+    // Rebuild derived indexes, if the configuration was reloaded in the meantime.
+    ConfigSnapshot currentConfigSnapshot = ConfigSnapshot.get();
+    if (currentConfigSnapshot != configSnapshot) {
+      if (configSnapshot != null) {
+        handleConfigReload(currentConfigSnapshot);
+      }
+      configSnapshot = currentConfigSnapshot;
+    }
+    ItemPolicyTable.handleServerTick();
+
+    // Adjust merge radius, limits and verification rate to the current tick time.
+    AdaptiveController.handleServerTick(minecraftServer);
+
+    // Batch merge of the item entities which joined during this tick.
+    for (LevelTracker levelTracker : LevelTrackerManager.getLevelTrackers()) {
+      ItemEntityBatchMerger.handleBatchMerge(levelTracker);
+    }
+
+    // Spawn the item entities which were split from virtual item stacks.
+    VirtualItemStackManager.handleServerTickEnd();
+
+    // Merge item entities which have drifted together since they joined.
+    ItemEntityRemerger.handleRemerge();
+
+    // Incremental verification of the tracked entities.
+    TrackerSweeper.sweep();
+
+    // Export a metrics snapshot, if the export interval has passed.
+    MetricsExporter.handleServerTick(minecraftServer);
+  }
+
+  public static void handleServerStopped() {
+    AdaptiveController.reset();
+    MetricsExporter.handleServerStopped();
+    VirtualItemStackManager.clear();
+    configSnapshot = null;
+
+    // Item tags are reloaded with the next server start.
+    ItemPolicyTable.invalidate();
+  }
+
+  private static void handleConfigReload(final ConfigSnapshot currentConfigSnapshot) {
+    // The dimension configs are resolved again, but the trackers are only rebuilt, if their cell
+    // size or eviction strategy changed.
+    for (LevelTracker levelTracker : LevelTrackerManager.getLevelTrackers()) {
+      if (levelTracker.updateConfig()) {
+        log.info(
+            "{} Rebuilt item entity tracker for {} with {} item entities",
+            LOG_PREFIX,
+            levelTracker.getServerLevel().dimension().location(),
+            levelTracker.getItemEntityTracker().size());
+      }
+    }
+    log.info("{} Applied configuration version {}", LOG_PREFIX, currentConfigSnapshot.version);
+  }
+}
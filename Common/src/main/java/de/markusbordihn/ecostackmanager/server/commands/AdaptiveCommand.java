@@ -0,0 +1,107 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.server.commands;
+
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import de.markusbordihn.ecostackmanager.commands.Command;
+import de.markusbordihn.ecostackmanager.config.AdaptiveControllerConfig;
+import de.markusbordihn.ecostackmanager.config.ExperienceOrbConfig;
+import de.markusbordihn.ecostackmanager.config.ItemEntityConfig;
+import de.markusbordihn.ecostackmanager.server.AdaptiveController;
+import de.markusbordihn.ecostackmanager.tracker.LevelTracker;
+import de.markusbordihn.ecostackmanager.tracker.LevelTrackerManager;
+import java.util.Locale;
+import net.minecraft.ChatFormatting;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+
+public class AdaptiveCommand extends Command {
+
+  private AdaptiveCommand() {}
+
+  public static ArgumentBuilder<CommandSourceStack, ?> register() {
+    return Commands.literal("adaptive")
+        .requires(cs -> cs.hasPermission(Commands.LEVEL_GAMEMASTERS))
+        .executes(context -> showState(context.getSource()));
+  }
+
+  public static int showState(final CommandSourceStack context) {
+    if (!AdaptiveController.isEnabled()) {
+      sendSuccessMessage(context, "■ Adaptive controller is disabled!", ChatFormatting.RED);
+      sendSuccessMessage(
+          context,
+          "> Use 'enabled=true' in "
+              + AdaptiveControllerConfig.CONFIG_FILE_NAME
+              + " to enable the adaptive controller.",
+          ChatFormatting.WHITE);
+      return Command.SINGLE_SUCCESS;
+    }
+    // The values are shown for the dimension of the command source, which could be overridden.
+    LevelTracker levelTracker = LevelTrackerManager.getLevelTracker(context.getLevel());
+    ItemEntityConfig itemEntityConfig = levelTracker.getItemEntityConfig();
+    ExperienceOrbConfig experienceOrbConfig = levelTracker.getExperienceOrbConfig();
+    sendSuccessMessage(
+        context,
+        "► Adaptive controller state for " + context.getLevel().dimension().location(),
+        ChatFormatting.GREEN);
+    sendSuccessMessage(
+        context,
+        String.format(
+            Locale.ROOT,
+            "> Tick time: %.1f ms (tighten at %d ms, relax at %d ms)",
+            AdaptiveController.getTickTime(),
+            AdaptiveControllerConfig.get().highTickTime,
+            AdaptiveControllerConfig.get().lowTickTime),
+        ChatFormatting.WHITE);
+    sendSuccessMessage(
+        context,
+        String.format(Locale.ROOT, "> Pressure: %.0f%%", AdaptiveController.getPressure() * 100),
+        ChatFormatting.WHITE);
+    sendSuccessMessage(
+        context,
+        "> Collect radius: "
+            + AdaptiveController.getItemCollectRadius(itemEntityConfig)
+            + " items / "
+            + AdaptiveController.getExperienceOrbCollectRadius(experienceOrbConfig)
+            + " experience orbs",
+        ChatFormatting.WHITE);
+    sendSuccessMessage(
+        context,
+        "> Item limits: "
+            + AdaptiveController.getMaxNumberOfItemsPerWorld(itemEntityConfig)
+            + " per world / "
+            + AdaptiveController.getMaxNumberOfItemsPerType(itemEntityConfig)
+            + " per type / "
+            + AdaptiveController.getMaxNumberOfItemsPerRegion(itemEntityConfig)
+            + " per region / "
+            + AdaptiveController.getMaxNumberOfItemsPerChunk(itemEntityConfig)
+            + " per chunk",
+        ChatFormatting.WHITE);
+    sendSuccessMessage(
+        context,
+        "> Verification entries per tick: "
+            + AdaptiveController.getItemVerificationEntriesPerTick(itemEntityConfig)
+            + " items / "
+            + AdaptiveController.getExperienceOrbVerificationEntriesPerTick(experienceOrbConfig)
+            + " experience orbs",
+        ChatFormatting.WHITE);
+    return Command.SINGLE_SUCCESS;
+  }
+}
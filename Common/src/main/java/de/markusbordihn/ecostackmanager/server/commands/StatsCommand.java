@@ -0,0 +1,147 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.server.commands;
+
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import de.markusbordihn.ecostackmanager.commands.Command;
+import de.markusbordihn.ecostackmanager.metrics.Histogram;
+import de.markusbordihn.ecostackmanager.metrics.LevelMetrics;
+import de.markusbordihn.ecostackmanager.metrics.MetricCounters;
+import de.markusbordihn.ecostackmanager.tracker.LevelTracker;
+import de.markusbordihn.ecostackmanager.tracker.LevelTrackerManager;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import net.minecraft.ChatFormatting;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.core.Registry;
+
+public class StatsCommand extends Command {
+
+  private static final int NUMBER_OF_TOP_ITEM_TYPES = 5;
+
+  private StatsCommand() {}
+
+  public static ArgumentBuilder<CommandSourceStack, ?> register() {
+    return Commands.literal("stats")
+        .requires(cs -> cs.hasPermission(Commands.LEVEL_GAMEMASTERS))
+        .executes(context -> showStats(context.getSource()))
+        .then(Commands.literal("reset").executes(context -> resetStats(context.getSource())));
+  }
+
+  public static int showStats(final CommandSourceStack context) {
+    sendSuccessMessage(context, "► Eco Stack Manager statistics", ChatFormatting.GREEN);
+    for (LevelTracker levelTracker : LevelTrackerManager.getLevelTrackers()) {
+      LevelMetrics levelMetrics = levelTracker.getLevelMetrics();
+      sendSuccessMessage(
+          context,
+          "■ "
+              + levelTracker.getServerLevel().dimension().location()
+              + ": "
+              + levelTracker.getItemEntityTracker().size()
+              + " item entities / "
+              + levelTracker.getExperienceOrbSectionIndex().size()
+              + " experience orbs",
+          ChatFormatting.YELLOW);
+      sendSuccessMessage(
+          context,
+          "> Item entities: "
+              + formatCounters(levelMetrics.itemEntities)
+              + ", "
+              + formatCandidates(levelMetrics.itemMergeCandidates)
+              + ", "
+              + formatNanos(levelMetrics.itemJoinNanos)
+              + " per join",
+          ChatFormatting.WHITE);
+      sendSuccessMessage(
+          context,
+          "> Experience orbs: "
+              + formatCounters(levelMetrics.experienceOrbs)
+              + ", "
+              + formatCandidates(levelMetrics.experienceOrbMergeCandidates)
+              + ", "
+              + formatNanos(levelMetrics.experienceOrbJoinNanos)
+              + " per join",
+          ChatFormatting.WHITE);
+      sendSuccessMessage(
+          context,
+          "> Batch merge: "
+              + formatNanos(levelMetrics.batchMergeNanos)
+              + " per tick / Remerge: "
+              + formatNanos(levelMetrics.remergeNanos)
+              + " per tick",
+          ChatFormatting.WHITE);
+
+      // Show the item types with the most joins, which are usually causing the most work.
+      List<Int2ObjectMap.Entry<MetricCounters>> itemTypes =
+          new ArrayList<>(levelMetrics.getItemTypes().int2ObjectEntrySet());
+      itemTypes.sort(
+          Comparator.comparingLong(
+                  (Int2ObjectMap.Entry<MetricCounters> entry) -> entry.getValue().joins.sum())
+              .reversed());
+      for (int i = 0; i < Math.min(NUMBER_OF_TOP_ITEM_TYPES, itemTypes.size()); i++) {
+        Int2ObjectMap.Entry<MetricCounters> itemType = itemTypes.get(i);
+        sendSuccessMessage(
+            context,
+            ">> "
+                + Registry.ITEM.getKey(Registry.ITEM.byId(itemType.getIntKey()))
+                + ": "
+                + formatCounters(itemType.getValue()),
+            ChatFormatting.GRAY);
+      }
+    }
+    return Command.SINGLE_SUCCESS;
+  }
+
+  public static int resetStats(final CommandSourceStack context) {
+    for (LevelTracker levelTracker : LevelTrackerManager.getLevelTrackers()) {
+      levelTracker.getLevelMetrics().reset();
+    }
+    sendSuccessMessage(context, "■ Reset Eco Stack Manager statistics!", ChatFormatting.RED);
+    return Command.SINGLE_SUCCESS;
+  }
+
+  private static String formatCounters(final MetricCounters metricCounters) {
+    return metricCounters.joins.sum()
+        + " joins / "
+        + metricCounters.merges.sum()
+        + " merges / "
+        + metricCounters.evictions.sum()
+        + " evictions";
+  }
+
+  private static String formatCandidates(final Histogram histogram) {
+    return String.format(
+        Locale.ROOT,
+        "%.1f candidates (p99 %d)",
+        histogram.getMean(),
+        histogram.getPercentile(0.99));
+  }
+
+  private static String formatNanos(final Histogram histogram) {
+    return String.format(
+        Locale.ROOT,
+        "%.1f µs (p99 %.1f µs)",
+        histogram.getMean() / 1000.0, histogram.getPercentile(0.99) / 1000.0);
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.server.commands;
+
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import de.markusbordihn.ecostackmanager.commands.Command;
+import de.markusbordihn.ecostackmanager.config.Config;
+import de.markusbordihn.ecostackmanager.debug.EventTracer;
+import java.nio.file.Path;
+import net.minecraft.ChatFormatting;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+
+public class TraceCommand extends Command {
+
+  private TraceCommand() {}
+
+  public static ArgumentBuilder<CommandSourceStack, ?> register() {
+    return Commands.literal("trace")
+        .requires(cs -> cs.hasPermission(Commands.LEVEL_GAMEMASTERS))
+        .then(Commands.literal("dump").executes(context -> dumpTrace(context.getSource())));
+  }
+
+  public static int dumpTrace(final CommandSourceStack context) {
+    int numberOfEvents = EventTracer.size();
+    Path traceFile;
+    try {
+      traceFile = EventTracer.dump(Config.getConfigDirectory());
+    } catch (Exception e) {
+      log.error("[Trace Command] Failed to dump trace events: {}", e);
+      return sendFailureMessage(context, "Failed to dump trace events: " + e.getMessage());
+    }
+    sendSuccessMessage(
+        context,
+        "► Dumped " + numberOfEvents + " trace events to " + traceFile,
+        ChatFormatting.GREEN);
+    return Command.SINGLE_SUCCESS;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.tracker;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import java.util.Arrays;
+import net.minecraft.world.entity.item.ItemEntity;
+
+public class EvictionQueue {
+
+  // Binary min-heap of item entities with their eviction priorities, which is indexed by the
+  // entity id, so that updates and removals of arbitrary item entities are O(log n).
+  private final Int2IntMap positions = new Int2IntOpenHashMap();
+  private ItemEntity[] itemEntities = new ItemEntity[16];
+  private long[] priorities = new long[16];
+  private int size = 0;
+
+  public EvictionQueue() {
+    this.positions.defaultReturnValue(-1);
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  public boolean contains(ItemEntity itemEntity) {
+    return this.positions.containsKey(itemEntity.getId());
+  }
+
+  public long getPriority(ItemEntity itemEntity) {
+    int position = this.positions.get(itemEntity.getId());
+    return position < 0 ? 0 : this.priorities[position];
+  }
+
+  public ItemEntity peek() {
+    return this.size > 0 ? this.itemEntities[0] : null;
+  }
+
+  public void add(ItemEntity itemEntity, long priority) {
+    if (contains(itemEntity)) {
+      update(itemEntity, priority);
+      return;
+    }
+    if (this.size == this.itemEntities.length) {
+      this.itemEntities = Arrays.copyOf(this.itemEntities, this.size * 2);
+      this.priorities = Arrays.copyOf(this.priorities, this.size * 2);
+    }
+    this.itemEntities[this.size] = itemEntity;
+    this.priorities[this.size] = priority;
+    this.positions.put(itemEntity.getId(), this.size);
+    siftUp(this.size++);
+  }
+
+  public void update(ItemEntity itemEntity, long priority) {
+    int position = this.positions.get(itemEntity.getId());
+    if (position < 0 || this.priorities[position] == priority) {
+      return;
+    }
+    long lastPriority = this.priorities[position];
+    this.priorities[position] = priority;
+    if (priority < lastPriority) {
+      siftUp(position);
+    } else {
+      siftDown(position);
+    }
+  }
+
+  public boolean remove(ItemEntity itemEntity) {
+    int position = this.positions.remove(itemEntity.getId());
+    if (position < 0) {
+      return false;
+    }
+
+    // Move the last item entity into the free position and restore the heap order.
+    int lastPosition = --this.size;
+    if (position != lastPosition) {
+      move(lastPosition, position);
+      siftDown(position);
+      siftUp(position);
+    }
+    this.itemEntities[lastPosition] = null;
+    return true;
+  }
+
+  public void clear() {
+    Arrays.fill(this.itemEntities, 0, this.size, null);
+    this.positions.clear();
+    this.size = 0;
+  }
+
+  private void siftUp(int position) {
+    while (position > 0) {
+      int parent = (position - 1) >>> 1;
+      if (this.priorities[parent] <= this.priorities[position]) {
+        break;
+      }
+      swap(position, parent);
+      position = parent;
+    }
+  }
+
+  private void siftDown(int position) {
+    while (true) {
+      int child = 2 * position + 1;
+      if (child >= this.size) {
+        break;
+      }
+      if (child + 1 < this.size && this.priorities[child + 1] < this.priorities[child]) {
+        child++;
+      }
+      if (this.priorities[position] <= this.priorities[child]) {
+        break;
+      }
+      swap(position, child);
+      position = child;
+    }
+  }
+
+  private void swap(int position, int otherPosition) {
+    ItemEntity itemEntity = this.itemEntities[position];
+    long priority = this.priorities[position];
+    move(otherPosition, position);
+    this.itemEntities[otherPosition] = itemEntity;
+    this.priorities[otherPosition] = priority;
+    this.positions.put(itemEntity.getId(), otherPosition);
+  }
+
+  private void move(int fromPosition, int toPosition) {
+    ItemEntity itemEntity = this.itemEntities[fromPosition];
+    this.itemEntities[toPosition] = itemEntity;
+    this.priorities[toPosition] = this.priorities[fromPosition];
+    this.positions.put(itemEntity.getId(), toPosition);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.tracker;
+
+import java.util.Locale;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.ItemStack;
+
+public enum EvictionStrategy {
+  // Item entities with the lowest priority are evicted first.
+  INSERTION_ORDER,
+  OLDEST,
+  LOWEST_VALUE,
+  FARTHEST_FROM_PLAYER,
+  HIGHEST_DENSITY;
+
+  public static EvictionStrategy fromName(final String name) {
+    try {
+      return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  public String getName() {
+    return this.name().toLowerCase(Locale.ROOT);
+  }
+
+  public boolean isDynamic() {
+    // The insertion order is the only priority which does not change over the lifetime.
+    return this != INSERTION_ORDER;
+  }
+
+  public long getPriority(
+      final ItemEntity itemEntity,
+      final ServerLevel serverLevel,
+      final ItemEntityGrid itemEntityGrid,
+      final long insertionSequence) {
+    return switch (this) {
+      case INSERTION_ORDER -> insertionSequence;
+      case OLDEST -> getSpawnTick(itemEntity, serverLevel);
+      case LOWEST_VALUE -> getValue(itemEntity.getItem());
+      case FARTHEST_FROM_PLAYER -> -getNearestPlayerDistance(itemEntity, serverLevel);
+      case HIGHEST_DENSITY -> -itemEntityGrid.countNearbyItemEntities(itemEntity);
+    };
+  }
+
+  private static long getSpawnTick(final ItemEntity itemEntity, final ServerLevel serverLevel) {
+    // The age and the game time are both increasing every tick, so that the spawn tick stays the
+    // same as long as the item entity is ticking.
+    return serverLevel.getGameTime() - itemEntity.getAge();
+  }
+
+  private static long getValue(final ItemStack itemStack) {
+    // Each rarity level is weighted four times higher than the previous one.
+    return (long) itemStack.getCount() << (2 * itemStack.getRarity().ordinal());
+  }
+
+  private static long getNearestPlayerDistance(
+      final ItemEntity itemEntity, final ServerLevel serverLevel) {
+    double nearestDistance = Double.MAX_VALUE;
+    for (ServerPlayer serverPlayer : serverLevel.players()) {
+      nearestDistance = Math.min(nearestDistance, serverPlayer.distanceToSqr(itemEntity));
+    }
+    return nearestDistance == Double.MAX_VALUE ? 0 : (long) nearestDistance;
+  }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.tracker;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.entity.ExperienceOrb;
+import net.minecraft.world.level.ChunkPos;
+
+public class ExperienceOrbSectionIndex {
+
+  private final Long2ObjectMap<List<ExperienceOrb>> sections = new Long2ObjectOpenHashMap<>();
+  private final Long2IntMap chunkSizes = new Long2IntOpenHashMap();
+  private final Int2ObjectMap<IndexEntry> entries = new Int2ObjectOpenHashMap<>();
+  private final List<IndexEntry> entryList = new ArrayList<>();
+  private final List<ExperienceOrb> relocateExperienceOrbs = new ArrayList<>();
+  private int sweepCursor = 0;
+  private int scannedMergeCandidates = 0;
+
+  private static int getSectionCoord(double coord) {
+    return SectionPos.blockToSectionCoord((int) Math.floor(coord));
+  }
+
+  private static long getChunkKey(long sectionKey) {
+    return ChunkPos.asLong(SectionPos.x(sectionKey), SectionPos.z(sectionKey));
+  }
+
+  public int size() {
+    return this.entries.size();
+  }
+
+  public boolean isEmpty() {
+    return this.entries.isEmpty();
+  }
+
+  public int countNearbyExperienceOrbs(ExperienceOrb experienceOrb) {
+    // Counts the experience orbs in the 3x3x3 sections around the experience orb.
+    int sectionX = getSectionCoord(experienceOrb.getX());
+    int sectionY = getSectionCoord(experienceOrb.getY());
+    int sectionZ = getSectionCoord(experienceOrb.getZ());
+    int numberOfExperienceOrbs = 0;
+    for (int x = sectionX - 1; x <= sectionX + 1; x++) {
+      for (int y = sectionY - 1; y <= sectionY + 1; y++) {
+        for (int z = sectionZ - 1; z <= sectionZ + 1; z++) {
+          List<ExperienceOrb> experienceOrbs = this.sections.get(SectionPos.asLong(x, y, z));
+          if (experienceOrbs != null) {
+            numberOfExperienceOrbs += experienceOrbs.size();
+          }
+        }
+      }
+    }
+    return numberOfExperienceOrbs;
+  }
+
+  public int getChunkSize(ExperienceOrb experienceOrb) {
+    IndexEntry indexEntry = this.entries.get(experienceOrb.getId());
+    return indexEntry != null ? this.chunkSizes.get(getChunkKey(indexEntry.sectionKey)) : 0;
+  }
+
+  public void add(ExperienceOrb experienceOrb) {
+    if (this.entries.containsKey(experienceOrb.getId())) {
+      update(experienceOrb);
+      return;
+    }
+    long sectionKey = getSectionKey(experienceOrb);
+    IndexEntry indexEntry = new IndexEntry(experienceOrb, sectionKey);
+    this.entries.put(experienceOrb.getId(), indexEntry);
+    indexEntry.index = this.entryList.size();
+    this.entryList.add(indexEntry);
+    addToSection(experienceOrb, sectionKey);
+  }
+
+  public void remove(ExperienceOrb experienceOrb) {
+    IndexEntry indexEntry = this.entries.remove(experienceOrb.getId());
+    if (indexEntry != null) {
+      removeFromEntryList(indexEntry);
+      removeFromSection(experienceOrb, indexEntry.sectionKey);
+    }
+  }
+
+  public int sweep(int maxEntries) {
+    int removedExperienceOrbs = 0;
+    int numberOfEntries = Math.min(maxEntries, this.entryList.size());
+    for (int i = 0; i < numberOfEntries && !this.entryList.isEmpty(); i++) {
+      if (this.sweepCursor >= this.entryList.size()) {
+        this.sweepCursor = 0;
+      }
+      ExperienceOrb experienceOrb = this.entryList.get(this.sweepCursor++).experienceOrb;
+      if (experienceOrb.isRemoved()) {
+        remove(experienceOrb);
+        removedExperienceOrbs++;
+      } else {
+        update(experienceOrb);
+      }
+    }
+    return removedExperienceOrbs;
+  }
+
+  public void update(ExperienceOrb experienceOrb) {
+    IndexEntry indexEntry = this.entries.get(experienceOrb.getId());
+    if (indexEntry == null) {
+      return;
+    }
+    long sectionKey = getSectionKey(experienceOrb);
+    if (indexEntry.sectionKey != sectionKey) {
+      removeFromSection(experienceOrb, indexEntry.sectionKey);
+      indexEntry.sectionKey = sectionKey;
+      addToSection(experienceOrb, sectionKey);
+    }
+  }
+
+  public void clear() {
+    this.sections.clear();
+    this.chunkSizes.clear();
+    this.entries.clear();
+    this.entryList.clear();
+    this.relocateExperienceOrbs.clear();
+    this.sweepCursor = 0;
+  }
+
+  public ExperienceOrb findMergeCandidate(
+      final int xStart,
+      final int yStart,
+      final int zStart,
+      final int xEnd,
+      final int yEnd,
+      final int zEnd,
+      final Predicate<ExperienceOrb> predicate,
+      final ToDoubleFunction<ExperienceOrb> score,
+      final int maxCandidates) {
+    // Without a score the first matching candidate is used, otherwise the candidate with the lowest
+    // score out of the first maxCandidates matching candidates.
+    ExperienceOrb result = null;
+    double resultScore = Double.MAX_VALUE;
+    int remainingCandidates = score == null ? 1 : Math.max(1, maxCandidates);
+    int scannedCandidates = 0;
+
+    // Only the sections which are overlapping the collect radius needs to be checked.
+    search:
+    for (int x = SectionPos.blockToSectionCoord(xStart);
+        x <= SectionPos.blockToSectionCoord(xEnd);
+        x++) {
+      for (int z = SectionPos.blockToSectionCoord(zStart);
+          z <= SectionPos.blockToSectionCoord(zEnd);
+          z++) {
+        for (int y = SectionPos.blockToSectionCoord(yStart);
+            y <= SectionPos.blockToSectionCoord(yEnd);
+            y++) {
+          List<ExperienceOrb> experienceOrbs = this.sections.get(SectionPos.asLong(x, y, z));
+          if (experienceOrbs == null) {
+            continue;
+          }
+          for (ExperienceOrb existingExperienceOrb : experienceOrbs) {
+            if (existingExperienceOrb.isRemoved() || hasMoved(existingExperienceOrb)) {
+              this.relocateExperienceOrbs.add(existingExperienceOrb);
+            }
+            scannedCandidates++;
+            if (predicate.test(existingExperienceOrb)) {
+              double candidateScore =
+                  score == null ? 0 : score.applyAsDouble(existingExperienceOrb);
+              if (candidateScore < resultScore) {
+                result = existingExperienceOrb;
+                resultScore = candidateScore;
+              }
+              if (--remainingCandidates <= 0) {
+                break search;
+              }
+            }
+          }
+        }
+      }
+    }
+    this.scannedMergeCandidates += scannedCandidates;
+
+    // Move experience orbs which have drifted into another section or are already removed.
+    if (!this.relocateExperienceOrbs.isEmpty()) {
+      for (ExperienceOrb relocateExperienceOrb : this.relocateExperienceOrbs) {
+        if (relocateExperienceOrb.isRemoved()) {
+          remove(relocateExperienceOrb);
+        } else {
+          update(relocateExperienceOrb);
+        }
+      }
+      this.relocateExperienceOrbs.clear();
+    }
+
+    return result;
+  }
+
+  public int pollScannedMergeCandidates() {
+    // Number of experience orbs which were compared by the merge candidate searches since the last
+    // poll, because a single merge could search for multiple kinds of candidates.
+    int result = this.scannedMergeCandidates;
+    this.scannedMergeCandidates = 0;
+    return result;
+  }
+
+  public ExperienceOrb findNearest(
+      final ExperienceOrb experienceOrb,
+      final int sectionRadius,
+      final Predicate<ExperienceOrb> predicate) {
+    int sectionX = getSectionCoord(experienceOrb.getX());
+    int sectionY = getSectionCoord(experienceOrb.getY());
+    int sectionZ = getSectionCoord(experienceOrb.getZ());
+    ExperienceOrb result = null;
+    double resultDistance = Double.MAX_VALUE;
+
+    // Sections are checked in growing shells around the experience orb, and the search stops after
+    // the first shell with a matching experience orb.
+    for (int radius = 0; radius <= sectionRadius && result == null; radius++) {
+      for (int x = sectionX - radius; x <= sectionX + radius; x++) {
+        for (int y = sectionY - radius; y <= sectionY + radius; y++) {
+          // Inside the shell only the first and last z section is part of the shell.
+          boolean isShell = Math.abs(x - sectionX) == radius || Math.abs(y - sectionY) == radius;
+          int zStep = isShell || radius == 0 ? 1 : 2 * radius;
+          for (int z = sectionZ - radius; z <= sectionZ + radius; z += zStep) {
+            List<ExperienceOrb> experienceOrbs = this.sections.get(SectionPos.asLong(x, y, z));
+            if (experienceOrbs == null) {
+              continue;
+            }
+            for (ExperienceOrb existingExperienceOrb : experienceOrbs) {
+              if (existingExperienceOrb != experienceOrb
+                  && !existingExperienceOrb.isRemoved()
+                  && predicate.test(existingExperienceOrb)) {
+                double distance = experienceOrb.distanceToSqr(existingExperienceOrb);
+                if (distance < resultDistance) {
+                  result = existingExperienceOrb;
+                  resultDistance = distance;
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private boolean hasMoved(ExperienceOrb experienceOrb) {
+    IndexEntry indexEntry = this.entries.get(experienceOrb.getId());
+    return indexEntry != null && indexEntry.sectionKey != getSectionKey(experienceOrb);
+  }
+
+  private long getSectionKey(ExperienceOrb experienceOrb) {
+    return SectionPos.asLong(
+        getSectionCoord(experienceOrb.getX()),
+        getSectionCoord(experienceOrb.getY()),
+        getSectionCoord(experienceOrb.getZ()));
+  }
+
+  private void removeFromEntryList(IndexEntry indexEntry) {
+    // Swap the last entry into the free slot to keep the removal O(1).
+    IndexEntry lastIndexEntry = this.entryList.remove(this.entryList.size() - 1);
+    if (lastIndexEntry != indexEntry) {
+      lastIndexEntry.index = indexEntry.index;
+      this.entryList.set(indexEntry.index, lastIndexEntry);
+    }
+    if (indexEntry.index == this.sweepCursor - 1) {
+      this.sweepCursor--;
+    }
+  }
+
+  private void addToSection(ExperienceOrb experienceOrb, long sectionKey) {
+    this.sections.computeIfAbsent(sectionKey, k -> new ArrayList<>()).add(experienceOrb);
+    this.chunkSizes.addTo(getChunkKey(sectionKey), 1);
+  }
+
+  private void removeFromSection(ExperienceOrb experienceOrb, long sectionKey) {
+    List<ExperienceOrb> experienceOrbs = this.sections.get(sectionKey);
+    if (experienceOrbs != null && experienceOrbs.remove(experienceOrb)) {
+      if (experienceOrbs.isEmpty()) {
+        this.sections.remove(sectionKey);
+      }
+      long chunkKey = getChunkKey(sectionKey);
+      if (this.chunkSizes.addTo(chunkKey, -1) <= 1) {
+        this.chunkSizes.remove(chunkKey);
+      }
+    }
+  }
+
+  private static class IndexEntry {
+    private final ExperienceOrb experienceOrb;
+    private int index;
+    private long sectionKey;
+
+    private IndexEntry(ExperienceOrb experienceOrb, long sectionKey) {
+      this.experienceOrb = experienceOrb;
+      this.sectionKey = sectionKey;
+    }
+  }
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.tracker;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.ItemStack;
+
+public class ItemEntityGrid {
+
+  // Neighbouring cell and column offsets ordered by their distance, so that the nearest cells are
+  // checked first and a bounded candidate search is still finding the nearest candidates.
+  private static final int[][] CELL_OFFSETS = createNeighbourOffsets(1);
+  private static final int[][] COLUMN_OFFSETS = createNeighbourOffsets(0);
+
+  // Columns are indexed by the packed x/z cell coordinates and contain the cells per y coordinate,
+  // so that the sky-visible y exemption could be handled by walking the whole column.
+  // Each cell buckets the item entities by their merge signature.
+  private final Long2ObjectMap<Int2ObjectMap<GridCell>> columns = new Long2ObjectOpenHashMap<>();
+  private final List<GridCell> cellList = new ArrayList<>();
+  private final Int2ObjectMap<GridEntry> entries = new Int2ObjectOpenHashMap<>();
+  private final List<GridEntry> entryList = new ArrayList<>();
+  private final List<ItemEntity> relocateItemEntities = new ArrayList<>();
+  private final SkyVisibilityCache skyVisibilityCache;
+  private final int cellSize;
+  private int sweepCursor = 0;
+  private int cellCursor = 0;
+  private ItemEntity mergeCandidate;
+  private double mergeCandidateScore;
+  private int remainingMergeCandidates;
+  private int scannedMergeCandidates;
+
+  public ItemEntityGrid(int cellSize, SkyVisibilityCache skyVisibilityCache) {
+    this.cellSize = Math.max(1, cellSize);
+    this.skyVisibilityCache = skyVisibilityCache;
+  }
+
+  private static long packColumn(int cellX, int cellZ) {
+    return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+  }
+
+  private static int[][] createNeighbourOffsets(int yRange) {
+    List<int[]> offsets = new ArrayList<>();
+    for (int x = -1; x <= 1; x++) {
+      for (int y = -yRange; y <= yRange; y++) {
+        for (int z = -1; z <= 1; z++) {
+          offsets.add(new int[] {x, y, z});
+        }
+      }
+    }
+    offsets.sort(
+        Comparator.comparingInt(
+            offset -> Math.abs(offset[0]) + Math.abs(offset[1]) + Math.abs(offset[2])));
+    return offsets.toArray(new int[0][]);
+  }
+
+  public int getCellSize() {
+    return this.cellSize;
+  }
+
+  public int size() {
+    return this.entries.size();
+  }
+
+  public int getNumberOfCells() {
+    return this.cellList.size();
+  }
+
+  public List<ItemEntity> getItemEntities() {
+    List<ItemEntity> itemEntities = new ArrayList<>(this.entryList.size());
+    for (GridEntry gridEntry : this.entryList) {
+      itemEntities.add(gridEntry.itemEntity);
+    }
+    return itemEntities;
+  }
+
+  public boolean contains(ItemEntity itemEntity) {
+    return this.entries.containsKey(itemEntity.getId());
+  }
+
+  public boolean canSeeSky(ItemEntity itemEntity) {
+    BlockPos blockPos = itemEntity.blockPosition();
+    GridEntry gridEntry = this.entries.get(itemEntity.getId());
+    if (gridEntry == null) {
+      return this.skyVisibilityCache.canSeeSky(blockPos.getX(), blockPos.getY(), blockPos.getZ());
+    }
+
+    // Sky visibility is only re-calculated if the item entity has moved to another block or if the
+    // result is outdated, because of possible block changes above the item entity.
+    long skyBlockPos = blockPos.asLong();
+    int gameTick = (int) itemEntity.level.getGameTime();
+    if (gridEntry.skyBlockPos != skyBlockPos
+        || gameTick - gridEntry.skyGameTick >= SkyVisibilityCache.MAX_AGE_TICKS) {
+      gridEntry.skyBlockPos = skyBlockPos;
+      gridEntry.skyGameTick = gameTick;
+      gridEntry.canSeeSky =
+          this.skyVisibilityCache.canSeeSky(blockPos.getX(), blockPos.getY(), blockPos.getZ());
+    }
+    return gridEntry.canSeeSky;
+  }
+
+  public void add(ItemEntity itemEntity) {
+    add(itemEntity, MergeSignature.of(itemEntity.getItem()));
+  }
+
+  public void add(ItemEntity itemEntity, long signature) {
+    if (this.entries.containsKey(itemEntity.getId())) {
+      update(itemEntity);
+      return;
+    }
+    GridEntry gridEntry =
+        new GridEntry(
+            itemEntity,
+            itemEntity.getItem(),
+            signature,
+            getCellCoord(itemEntity.getX()),
+            getCellCoord(itemEntity.getY()),
+            getCellCoord(itemEntity.getZ()));
+    this.entries.put(itemEntity.getId(), gridEntry);
+    gridEntry.index = this.entryList.size();
+    this.entryList.add(gridEntry);
+    addToCell(gridEntry);
+  }
+
+  public void remove(ItemEntity itemEntity) {
+    GridEntry gridEntry = this.entries.remove(itemEntity.getId());
+    if (gridEntry != null) {
+      removeFromEntryList(gridEntry);
+      removeFromCell(gridEntry);
+    }
+  }
+
+  public ItemEntity nextSweepItemEntity() {
+    if (this.entryList.isEmpty()) {
+      return null;
+    }
+    if (this.sweepCursor >= this.entryList.size()) {
+      this.sweepCursor = 0;
+    }
+    return this.entryList.get(this.sweepCursor++).itemEntity;
+  }
+
+  public boolean nextCellItemEntities(List<ItemEntity> itemEntities, IntList bucketEnds) {
+    // Copies the item entities of the next occupied cell in a round-robin order, so that the
+    // caller is able to discard them while iterating. The end index of each signature bucket is
+    // added to the bucket ends.
+    if (this.cellList.isEmpty()) {
+      return false;
+    }
+    if (this.cellCursor >= this.cellList.size()) {
+      this.cellCursor = 0;
+    }
+    GridCell cell = this.cellList.get(this.cellCursor++);
+    for (List<ItemEntity> cellItemEntities : cell.buckets.values()) {
+      itemEntities.addAll(cellItemEntities);
+      bucketEnds.add(itemEntities.size());
+    }
+    return true;
+  }
+
+  public void update(ItemEntity itemEntity) {
+    GridEntry gridEntry = this.entries.get(itemEntity.getId());
+    if (gridEntry == null) {
+      return;
+    }
+    int cellX = getCellCoord(itemEntity.getX());
+    int cellY = getCellCoord(itemEntity.getY());
+    int cellZ = getCellCoord(itemEntity.getZ());
+
+    // The merge signature is only recalculated if the item stack was replaced by setItem.
+    ItemStack itemStack = itemEntity.getItem();
+    long signature = gridEntry.signature;
+    if (gridEntry.itemStack != itemStack) {
+      gridEntry.itemStack = itemStack;
+      signature = MergeSignature.of(itemStack);
+    }
+    if (gridEntry.cellX != cellX
+        || gridEntry.cellY != cellY
+        || gridEntry.cellZ != cellZ
+        || gridEntry.signature != signature) {
+      removeFromCell(gridEntry);
+      gridEntry.signature = signature;
+      gridEntry.cellX = cellX;
+      gridEntry.cellY = cellY;
+      gridEntry.cellZ = cellZ;
+      addToCell(gridEntry);
+    }
+  }
+
+  public void clear() {
+    this.columns.clear();
+    this.cellList.clear();
+    this.entries.clear();
+    this.entryList.clear();
+    this.relocateItemEntities.clear();
+    this.sweepCursor = 0;
+    this.cellCursor = 0;
+  }
+
+  public int countNearbyItemEntities(ItemEntity itemEntity) {
+    int cellX = getCellCoord(itemEntity.getX());
+    int cellY = getCellCoord(itemEntity.getY());
+    int cellZ = getCellCoord(itemEntity.getZ());
+    int numberOfItemEntities = 0;
+    for (int x = cellX - 1; x <= cellX + 1; x++) {
+      for (int z = cellZ - 1; z <= cellZ + 1; z++) {
+        Int2ObjectMap<GridCell> column = this.columns.get(packColumn(x, z));
+        if (column == null) {
+          continue;
+        }
+        for (int y = cellY - 1; y <= cellY + 1; y++) {
+          GridCell cell = column.get(y);
+          if (cell != null) {
+            numberOfItemEntities += cell.size;
+          }
+        }
+      }
+    }
+    return numberOfItemEntities;
+  }
+
+  public ItemEntity findMergeCandidate(
+      final ItemEntity itemEntity,
+      final long signature,
+      final boolean ignoreYAxis,
+      final Predicate<ItemEntity> predicate,
+      final ToDoubleFunction<ItemEntity> score,
+      final int maxCandidates) {
+    int cellX = getCellCoord(itemEntity.getX());
+    int cellY = getCellCoord(itemEntity.getY());
+    int cellZ = getCellCoord(itemEntity.getZ());
+
+    // Without a score the first matching candidate is used, otherwise the candidate with the lowest
+    // score out of the first maxCandidates matching candidates.
+    this.mergeCandidate = null;
+    this.mergeCandidateScore = Double.MAX_VALUE;
+    this.remainingMergeCandidates = score == null ? 1 : Math.max(1, maxCandidates);
+    this.scannedMergeCandidates = 0;
+
+    // Only the 3x3 neighbouring columns need to be checked, because the cell size matches the
+    // collect radius. Within a column all cells are checked if the y-axis could be ignored.
+    search:
+    for (int[] offset : ignoreYAxis ? COLUMN_OFFSETS : CELL_OFFSETS) {
+      Int2ObjectMap<GridCell> column =
+          this.columns.get(packColumn(cellX + offset[0], cellZ + offset[2]));
+      if (column == null) {
+        continue;
+      }
+      if (ignoreYAxis) {
+        for (GridCell cell : column.values()) {
+          if (!collectMergeCandidates(cell, signature, predicate, score)) {
+            break search;
+          }
+        }
+      } else if (!collectMergeCandidates(
+          column.get(cellY + offset[1]), signature, predicate, score)) {
+        break search;
+      }
+    }
+    ItemEntity result = this.mergeCandidate;
+    this.mergeCandidate = null;
+
+    // Re-index item entities which have drifted into another cell or are already removed.
+    if (!this.relocateItemEntities.isEmpty()) {
+      for (ItemEntity relocateItemEntity : this.relocateItemEntities) {
+        if (relocateItemEntity.isRemoved()) {
+          remove(relocateItemEntity);
+        } else {
+          update(relocateItemEntity);
+        }
+      }
+      this.relocateItemEntities.clear();
+    }
+
+    return result;
+  }
+
+  public int getScannedMergeCandidates() {
+    // Number of item entities which were compared by the last merge candidate search.
+    return this.scannedMergeCandidates;
+  }
+
+  private boolean collectMergeCandidates(
+      final GridCell cell,
+      final long signature,
+      final Predicate<ItemEntity> predicate,
+      final ToDoubleFunction<ItemEntity> score) {
+    // Returns false, if no further candidates should be collected.
+    if (cell == null) {
+      return true;
+    }
+    List<ItemEntity> itemEntities = cell.buckets.get(signature);
+    if (itemEntities == null) {
+      return true;
+    }
+    for (ItemEntity existingItemEntity : itemEntities) {
+      if (existingItemEntity.isRemoved() || hasMoved(existingItemEntity)) {
+        this.relocateItemEntities.add(existingItemEntity);
+      }
+      this.scannedMergeCandidates++;
+      if (predicate.test(existingItemEntity)) {
+        double candidateScore = score == null ? 0 : score.applyAsDouble(existingItemEntity);
+        if (candidateScore < this.mergeCandidateScore) {
+          this.mergeCandidate = existingItemEntity;
+          this.mergeCandidateScore = candidateScore;
+        }
+        if (--this.remainingMergeCandidates <= 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private boolean hasMoved(ItemEntity itemEntity) {
+    GridEntry gridEntry = this.entries.get(itemEntity.getId());
+    return gridEntry != null
+        && (gridEntry.cellX != getCellCoord(itemEntity.getX())
+            || gridEntry.cellY != getCellCoord(itemEntity.getY())
+            || gridEntry.cellZ != getCellCoord(itemEntity.getZ()));
+  }
+
+  private int getCellCoord(double coord) {
+    // Uses the same truncated block coordinate as the merge range check.
+    return Math.floorDiv((int) coord, this.cellSize);
+  }
+
+  private void removeFromEntryList(GridEntry gridEntry) {
+    // Swap the last entry into the free slot to keep the removal O(1).
+    GridEntry lastGridEntry = this.entryList.remove(this.entryList.size() - 1);
+    if (lastGridEntry != gridEntry) {
+      lastGridEntry.index = gridEntry.index;
+      this.entryList.set(gridEntry.index, lastGridEntry);
+    }
+    if (gridEntry.index == this.sweepCursor - 1) {
+      this.sweepCursor--;
+    }
+  }
+
+  private void addToCell(GridEntry gridEntry) {
+    long columnKey = packColumn(gridEntry.cellX, gridEntry.cellZ);
+    Int2ObjectMap<GridCell> column =
+        this.columns.computeIfAbsent(columnKey, k -> new Int2ObjectOpenHashMap<>());
+    GridCell cell = column.get(gridEntry.cellY);
+    if (cell == null) {
+      cell = new GridCell();
+      cell.index = this.cellList.size();
+      this.cellList.add(cell);
+      column.put(gridEntry.cellY, cell);
+    }
+    cell.buckets
+        .computeIfAbsent(gridEntry.signature, k -> new ArrayList<>())
+        .add(gridEntry.itemEntity);
+    cell.size++;
+  }
+
+  private void removeFromCell(GridEntry gridEntry) {
+    long columnKey = packColumn(gridEntry.cellX, gridEntry.cellZ);
+    Int2ObjectMap<GridCell> column = this.columns.get(columnKey);
+    if (column == null) {
+      return;
+    }
+    GridCell cell = column.get(gridEntry.cellY);
+    if (cell == null) {
+      return;
+    }
+    List<ItemEntity> itemEntities = cell.buckets.get(gridEntry.signature);
+    if (itemEntities != null && itemEntities.remove(gridEntry.itemEntity)) {
+      cell.size--;
+      if (itemEntities.isEmpty()) {
+        cell.buckets.remove(gridEntry.signature);
+      }
+    }
+
+    // Remove empty cells and columns to keep the grid small.
+    if (cell.size <= 0) {
+      removeFromCellList(cell);
+      column.remove(gridEntry.cellY);
+      if (column.isEmpty()) {
+        this.columns.remove(columnKey);
+      }
+    }
+  }
+
+  private void removeFromCellList(GridCell cell) {
+    // Swap the last cell into the free slot to keep the removal O(1).
+    GridCell lastCell = this.cellList.remove(this.cellList.size() - 1);
+    if (lastCell != cell) {
+      lastCell.index = cell.index;
+      this.cellList.set(cell.index, lastCell);
+    }
+    if (cell.index == this.cellCursor - 1) {
+      this.cellCursor--;
+    }
+  }
+
+  private static class GridCell {
+    private final Long2ObjectMap<List<ItemEntity>> buckets = new Long2ObjectOpenHashMap<>();
+    private int index;
+    private int size;
+  }
+
+  private static class GridEntry {
+    private final ItemEntity itemEntity;
+    private ItemStack itemStack;
+    private long signature;
+    private int index;
+    private int cellX;
+    private int cellY;
+    private int cellZ;
+    private long skyBlockPos = Long.MIN_VALUE;
+    private int skyGameTick;
+    private boolean canSeeSky;
+
+    private GridEntry(
+        ItemEntity itemEntity,
+        ItemStack itemStack,
+        long signature,
+        int cellX,
+        int cellY,
+        int cellZ) {
+      this.itemEntity = itemEntity;
+      this.itemStack = itemStack;
+      this.signature = signature;
+      this.cellX = cellX;
+      this.cellY = cellY;
+      this.cellZ = cellZ;
+    }
+  }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.tracker;
+
+import de.markusbordihn.ecostackmanager.config.ItemEntityConfig;
+import de.markusbordihn.ecostackmanager.metrics.LevelMetrics;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import net.minecraft.core.Registry;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.level.ChunkPos;
+
+public class ItemEntityTracker {
+
+  // Item type queues are indexed by the numeric registry id of the item.
+  private final Int2ObjectMap<EvictionQueue> itemTypeEntities = new Int2ObjectOpenHashMap<>();
+  private final EvictionQueue itemWorldEntities = new EvictionQueue();
+
+  // The registry id is remembered per item entity, because merged item entities are discarded with
+  // an empty item stack, which would resolve to the type queue of air.
+  private final Int2IntMap itemEntityTypes = new Int2IntOpenHashMap();
+
+  // Item chunk and region queues are indexed by the packed chunk and region position, which are
+  // remembered per item entity to be able to remove it after it has moved.
+  private final Long2ObjectMap<EvictionQueue> itemChunkEntities = new Long2ObjectOpenHashMap<>();
+  private final Long2ObjectMap<EvictionQueue> itemRegionEntities = new Long2ObjectOpenHashMap<>();
+  private final Int2LongMap itemEntityChunks = new Int2LongOpenHashMap();
+
+  private final Set<ItemEntity> pendingItemEntities = new LinkedHashSet<>();
+  private final ItemEntityGrid itemEntityGrid;
+  private final EvictionStrategy evictionStrategy;
+  private final ServerLevel serverLevel;
+  private final LevelMetrics levelMetrics;
+  private ItemEntityConfig itemEntityConfig;
+  private long insertionSequence = 0;
+
+  public ItemEntityTracker(
+      ServerLevel serverLevel,
+      int cellSize,
+      SkyVisibilityCache skyVisibilityCache,
+      ItemEntityConfig itemEntityConfig,
+      LevelMetrics levelMetrics) {
+    this.serverLevel = serverLevel;
+    this.levelMetrics = levelMetrics;
+    this.itemEntityGrid = new ItemEntityGrid(cellSize, skyVisibilityCache);
+    this.evictionStrategy = itemEntityConfig.evictionStrategy;
+    this.itemEntityConfig = itemEntityConfig;
+  }
+
+  public EvictionQueue getItemTypeEntities(Item item) {
+    return this.itemTypeEntities.get(Registry.ITEM.getId(item));
+  }
+
+  public static long getRegionKey(long chunkKey) {
+    return ChunkPos.asLong(ChunkPos.getX(chunkKey) >> 5, ChunkPos.getZ(chunkKey) >> 5);
+  }
+
+  public EvictionQueue getItemChunkEntities(long chunkKey) {
+    return this.itemChunkEntities.get(chunkKey);
+  }
+
+  public EvictionQueue getItemRegionEntities(long regionKey) {
+    return this.itemRegionEntities.get(regionKey);
+  }
+
+  public EvictionQueue getItemWorldEntities() {
+    return this.itemWorldEntities;
+  }
+
+  public ItemEntityGrid getItemEntityGrid() {
+    return this.itemEntityGrid;
+  }
+
+  public EvictionStrategy getEvictionStrategy() {
+    return this.evictionStrategy;
+  }
+
+  public LevelMetrics getLevelMetrics() {
+    return this.levelMetrics;
+  }
+
+  public ItemEntityConfig getItemEntityConfig() {
+    return this.itemEntityConfig;
+  }
+
+  public void setItemEntityConfig(ItemEntityConfig itemEntityConfig) {
+    this.itemEntityConfig = itemEntityConfig;
+  }
+
+  public int size() {
+    return this.itemWorldEntities.size();
+  }
+
+  public EvictionQueue add(ItemEntity itemEntity, Item item) {
+    return add(itemEntity, item, MergeSignature.of(itemEntity.getItem()));
+  }
+
+  public EvictionQueue add(ItemEntity itemEntity, Item item, long signature) {
+    this.itemEntityGrid.add(itemEntity, signature);
+    long priority =
+        this.evictionStrategy.getPriority(
+            itemEntity, this.serverLevel, this.itemEntityGrid, this.insertionSequence++);
+    this.itemWorldEntities.add(itemEntity, priority);
+    int itemId = Registry.ITEM.getId(item);
+    EvictionQueue itemTypeEntities =
+        this.itemTypeEntities.computeIfAbsent(itemId, k -> new EvictionQueue());
+    itemTypeEntities.add(itemEntity, priority);
+    this.itemEntityTypes.put(itemEntity.getId(), itemId);
+    addToChunk(itemEntity, itemEntity.chunkPosition().toLong(), priority);
+    return itemTypeEntities;
+  }
+
+  public void update(ItemEntity itemEntity) {
+    this.itemEntityGrid.update(itemEntity);
+
+    if (!this.itemWorldEntities.contains(itemEntity)) {
+      return;
+    }
+
+    // Refresh the eviction priority, because position, value or surrounding could have changed.
+    long priority = this.itemWorldEntities.getPriority(itemEntity);
+    if (this.evictionStrategy.isDynamic()) {
+      priority =
+          this.evictionStrategy.getPriority(itemEntity, this.serverLevel, this.itemEntityGrid, 0);
+      this.itemWorldEntities.update(itemEntity, priority);
+      EvictionQueue itemEntities =
+          this.itemTypeEntities.get(this.itemEntityTypes.get(itemEntity.getId()));
+      if (itemEntities != null) {
+        itemEntities.update(itemEntity, priority);
+      }
+    }
+
+    // Move the item entity to the chunk queue of its current position.
+    long chunkKey = itemEntity.chunkPosition().toLong();
+    if (this.itemEntityChunks.get(itemEntity.getId()) != chunkKey) {
+      removeFromChunk(itemEntity);
+      addToChunk(itemEntity, chunkKey, priority);
+    } else if (this.evictionStrategy.isDynamic()) {
+      this.itemChunkEntities.get(chunkKey).update(itemEntity, priority);
+      this.itemRegionEntities.get(getRegionKey(chunkKey)).update(itemEntity, priority);
+    }
+  }
+
+  public boolean remove(ItemEntity itemEntity) {
+    boolean removed = this.itemWorldEntities.remove(itemEntity);
+    this.itemEntityGrid.remove(itemEntity);
+    removeFromChunk(itemEntity);
+    if (this.itemEntityTypes.containsKey(itemEntity.getId())) {
+      EvictionQueue itemEntities =
+          this.itemTypeEntities.get(this.itemEntityTypes.remove(itemEntity.getId()));
+      if (itemEntities != null) {
+        removed = itemEntities.remove(itemEntity) || removed;
+      }
+    }
+    return removed;
+  }
+
+  private void addToChunk(ItemEntity itemEntity, long chunkKey, long priority) {
+    this.itemEntityChunks.put(itemEntity.getId(), chunkKey);
+    this.itemChunkEntities
+        .computeIfAbsent(chunkKey, k -> new EvictionQueue())
+        .add(itemEntity, priority);
+    this.itemRegionEntities
+        .computeIfAbsent(getRegionKey(chunkKey), k -> new EvictionQueue())
+        .add(itemEntity, priority);
+  }
+
+  private void removeFromChunk(ItemEntity itemEntity) {
+    if (!this.itemEntityChunks.containsKey(itemEntity.getId())) {
+      return;
+    }
+    long chunkKey = this.itemEntityChunks.remove(itemEntity.getId());
+    removeFromQueue(this.itemChunkEntities, chunkKey, itemEntity);
+    removeFromQueue(this.itemRegionEntities, getRegionKey(chunkKey), itemEntity);
+  }
+
+  private static void removeFromQueue(
+      Long2ObjectMap<EvictionQueue> evictionQueues, long key, ItemEntity itemEntity) {
+    // Remove empty queues to keep the maps small for item entities spread over many chunks.
+    EvictionQueue evictionQueue = evictionQueues.get(key);
+    if (evictionQueue != null && evictionQueue.remove(itemEntity) && evictionQueue.isEmpty()) {
+      evictionQueues.remove(key);
+    }
+  }
+
+  public ItemEntity evict(EvictionQueue evictionQueue) {
+    ItemEntity itemEntity = evictionQueue.peek();
+    if (itemEntity != null) {
+      itemEntity.discard();
+      remove(itemEntity);
+    }
+    return itemEntity;
+  }
+
+  public void addPending(ItemEntity itemEntity) {
+    this.pendingItemEntities.add(itemEntity);
+  }
+
+  public boolean removePending(ItemEntity itemEntity) {
+    return !this.pendingItemEntities.isEmpty() && this.pendingItemEntities.remove(itemEntity);
+  }
+
+  public boolean hasPending() {
+    return !this.pendingItemEntities.isEmpty();
+  }
+
+  public List<ItemEntity> pollPending() {
+    List<ItemEntity> itemEntities = new ArrayList<>(this.pendingItemEntities);
+    this.pendingItemEntities.clear();
+    return itemEntities;
+  }
+
+  public int sweep(int maxEntries) {
+    int removedItemEntities = 0;
+    int numberOfEntries = Math.min(maxEntries, this.itemEntityGrid.size());
+    for (int i = 0; i < numberOfEntries; i++) {
+      ItemEntity itemEntity = this.itemEntityGrid.nextSweepItemEntity();
+      if (itemEntity == null) {
+        break;
+      }
+      if (itemEntity.isRemoved()) {
+        remove(itemEntity);
+        removedItemEntities++;
+      } else {
+        update(itemEntity);
+      }
+    }
+    return removedItemEntities;
+  }
+
+  public void transferTo(ItemEntityTracker itemEntityTracker) {
+    // Item entities are added in their current eviction order, so that it is kept if possible.
+    List<ItemEntity> itemEntities = this.itemEntityGrid.getItemEntities();
+    itemEntities.sort(Comparator.comparingLong(this.itemWorldEntities::getPriority));
+    for (ItemEntity itemEntity : itemEntities) {
+      if (!itemEntity.isRemoved()) {
+        itemEntityTracker.add(
+            itemEntity, Item.byId(this.itemEntityTypes.get(itemEntity.getId())));
+      }
+    }
+    for (ItemEntity itemEntity : this.pendingItemEntities) {
+      itemEntityTracker.addPending(itemEntity);
+    }
+    clear();
+  }
+
+  public void clear() {
+    this.itemTypeEntities.clear();
+    this.itemWorldEntities.clear();
+    this.itemEntityTypes.clear();
+    this.itemChunkEntities.clear();
+    this.itemRegionEntities.clear();
+    this.itemEntityChunks.clear();
+    this.pendingItemEntities.clear();
+    this.itemEntityGrid.clear();
+    this.insertionSequence = 0;
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.tracker;
+
+import de.markusbordihn.ecostackmanager.config.ConfigSnapshot;
+import de.markusbordihn.ecostackmanager.config.ExperienceOrbConfig;
+import de.markusbordihn.ecostackmanager.config.ItemEntityConfig;
+import de.markusbordihn.ecostackmanager.metrics.LevelMetrics;
+import de.markusbordihn.ecostackmanager.server.AdaptiveController;
+import net.minecraft.server.level.ServerLevel;
+
+public class LevelTracker {
+
+  private final ServerLevel serverLevel;
+  private final String dimension;
+  private final SkyVisibilityCache skyVisibilityCache;
+  private ItemEntityTracker itemEntityTracker;
+  private final ExperienceOrbSectionIndex experienceOrbSectionIndex;
+  private final LevelMetrics levelMetrics = new LevelMetrics();
+
+  // Dimension specific configs, which are resolved once per configuration version.
+  private ExperienceOrbConfig experienceOrbConfig;
+  private int configVersion;
+
+  public LevelTracker(ServerLevel serverLevel) {
+    ConfigSnapshot configSnapshot = ConfigSnapshot.get();
+    this.serverLevel = serverLevel;
+    this.dimension = serverLevel.dimension().location().toString();
+    this.skyVisibilityCache = new SkyVisibilityCache(serverLevel);
+    this.itemEntityTracker =
+        createItemEntityTracker(configSnapshot.itemEntityConfig.getDimensionConfig(this.dimension));
+    this.experienceOrbSectionIndex = new ExperienceOrbSectionIndex();
+    this.experienceOrbConfig =
+        configSnapshot.experienceOrbConfig.getDimensionConfig(this.dimension);
+    this.configVersion = configSnapshot.version;
+  }
+
+  public ServerLevel getServerLevel() {
+    return this.serverLevel;
+  }
+
+  public SkyVisibilityCache getSkyVisibilityCache() {
+    return this.skyVisibilityCache;
+  }
+
+  public ItemEntityTracker getItemEntityTracker() {
+    return this.itemEntityTracker;
+  }
+
+  public ItemEntityConfig getItemEntityConfig() {
+    return this.itemEntityTracker.getItemEntityConfig();
+  }
+
+  public ExperienceOrbConfig getExperienceOrbConfig() {
+    return this.experienceOrbConfig;
+  }
+
+  public boolean updateConfig() {
+    ConfigSnapshot configSnapshot = ConfigSnapshot.get();
+    if (this.configVersion == configSnapshot.version) {
+      return false;
+    }
+    this.configVersion = configSnapshot.version;
+    this.experienceOrbConfig =
+        configSnapshot.experienceOrbConfig.getDimensionConfig(this.dimension);
+
+    // The item entity tracker is only rebuilt, if the cell size or the eviction strategy changed.
+    ItemEntityConfig itemEntityConfig =
+        configSnapshot.itemEntityConfig.getDimensionConfig(this.dimension);
+    int cellSize = Math.max(1, AdaptiveController.getMaxItemCollectRadius(itemEntityConfig));
+    if (this.itemEntityTracker.getItemEntityGrid().getCellSize() == cellSize
+        && this.itemEntityTracker.getEvictionStrategy() == itemEntityConfig.evictionStrategy) {
+      this.itemEntityTracker.setItemEntityConfig(itemEntityConfig);
+      return false;
+    }
+    ItemEntityTracker newItemEntityTracker = createItemEntityTracker(itemEntityConfig);
+    this.itemEntityTracker.transferTo(newItemEntityTracker);
+    this.itemEntityTracker = newItemEntityTracker;
+    return true;
+  }
+
+  private ItemEntityTracker createItemEntityTracker(ItemEntityConfig itemEntityConfig) {
+    return new ItemEntityTracker(
+        this.serverLevel,
+        AdaptiveController.getMaxItemCollectRadius(itemEntityConfig),
+        this.skyVisibilityCache,
+        itemEntityConfig,
+        this.levelMetrics);
+  }
+
+  public ExperienceOrbSectionIndex getExperienceOrbSectionIndex() {
+    return this.experienceOrbSectionIndex;
+  }
+
+  public LevelMetrics getLevelMetrics() {
+    return this.levelMetrics;
+  }
+
+  public void clear() {
+    this.skyVisibilityCache.clear();
+    this.itemEntityTracker.clear();
+    this.experienceOrbSectionIndex.clear();
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.tracker;
+
+import de.markusbordihn.ecostackmanager.Constants;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class LevelTrackerManager {
+
+  private static final Logger log = LogManager.getLogger(Constants.LOG_NAME);
+  private static final String LOG_PREFIX = "[Level Tracker]";
+
+  // ServerLevel does not override equals / hashCode, so that the map is using identity lookups.
+  private static final Map<ServerLevel, LevelTracker> levelTrackerMap = new ConcurrentHashMap<>();
+
+  // Most events are for the same level in a row, so that the last lookup is cached.
+  private static LevelTracker lastLevelTracker = null;
+
+  private LevelTrackerManager() {}
+
+  public static void handleLevelLoad(ServerLevel serverLevel) {
+    log.debug("{} Creating tracker for {}", LOG_PREFIX, serverLevel.dimension().location());
+    getLevelTracker(serverLevel);
+  }
+
+  public static void handleLevelUnload(ServerLevel serverLevel) {
+    LevelTracker levelTracker = levelTrackerMap.remove(serverLevel);
+    if (levelTracker != null) {
+      log.debug("{} Removing tracker for {}", LOG_PREFIX, serverLevel.dimension().location());
+      levelTracker.clear();
+    }
+    if (lastLevelTracker == levelTracker) {
+      lastLevelTracker = null;
+    }
+  }
+
+  public static void handleServerStopped() {
+    log.debug("{} Removing all {} level trackers", LOG_PREFIX, levelTrackerMap.size());
+    for (LevelTracker levelTracker : levelTrackerMap.values()) {
+      levelTracker.clear();
+    }
+    levelTrackerMap.clear();
+    lastLevelTracker = null;
+  }
+
+  public static void handleBlockUpdate(ServerLevel serverLevel, BlockPos blockPos) {
+    LevelTracker levelTracker = findLevelTracker(serverLevel);
+    if (levelTracker != null) {
+      levelTracker.getSkyVisibilityCache().invalidate(blockPos);
+    }
+  }
+
+  public static void handleChunkUnload(ServerLevel serverLevel, ChunkPos chunkPos) {
+    LevelTracker levelTracker = findLevelTracker(serverLevel);
+    if (levelTracker != null) {
+      levelTracker.getSkyVisibilityCache().invalidateChunk(chunkPos);
+    }
+  }
+
+  public static LevelTracker getLevelTracker(ServerLevel serverLevel) {
+    LevelTracker levelTracker = lastLevelTracker;
+    if (levelTracker != null && levelTracker.getServerLevel() == serverLevel) {
+      return levelTracker;
+    }
+
+    // Level trackers are created on level load, but entities could join before the load event.
+    levelTracker = levelTrackerMap.computeIfAbsent(serverLevel, LevelTracker::new);
+    lastLevelTracker = levelTracker;
+    return levelTracker;
+  }
+
+  public static LevelTracker findLevelTracker(ServerLevel serverLevel) {
+    LevelTracker levelTracker = lastLevelTracker;
+    if (levelTracker != null && levelTracker.getServerLevel() == serverLevel) {
+      return levelTracker;
+    }
+
+    // Leave events are fired while the level is closed after its unload event, so that a missing
+    // level tracker is not created again, which would keep the unloaded level in memory.
+    levelTracker = levelTrackerMap.get(serverLevel);
+    if (levelTracker != null) {
+      lastLevelTracker = levelTracker;
+    }
+    return levelTracker;
+  }
+
+  public static Collection<LevelTracker> getLevelTrackers() {
+    return levelTrackerMap.values();
+  }
+}
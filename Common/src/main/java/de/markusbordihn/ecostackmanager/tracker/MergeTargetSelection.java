@@ -0,0 +1,54 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.tracker;
+
+import java.util.Locale;
+
+public enum MergeTargetSelection {
+  // Merge candidates with the lowest score are selected first.
+  FIRST_FOUND,
+  NEAREST,
+  MOST_ROOM;
+
+  public static MergeTargetSelection fromName(final String name) {
+    try {
+      return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  public String getName() {
+    return this.name().toLowerCase(Locale.ROOT);
+  }
+
+  public boolean isScored() {
+    return this != FIRST_FOUND;
+  }
+
+  public double getScore(final double distanceSqr, final int room) {
+    // For the most room the distance is mapped to [0, 1), so that it only breaks ties.
+    return switch (this) {
+      case FIRST_FOUND -> 0;
+      case NEAREST -> distanceSqr;
+      case MOST_ROOM -> distanceSqr / (distanceSqr + 1) - room;
+    };
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.tracker;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.levelgen.Heightmap;
+
+public class SkyVisibilityCache {
+
+  // Cached columns are re-calculated after this number of ticks, because not all block changes
+  // are reported by an event.
+  public static final int MAX_AGE_TICKS = 20;
+
+  // Upper limit for the cached columns, before the whole cache is cleared.
+  private static final int MAX_COLUMNS = 16384;
+
+  // Columns are indexed by the packed x/z block coordinates and contain the game tick of the
+  // calculation in the upper and the sky-visible height in the lower 32 bits.
+  private final Long2LongMap columns = new Long2LongOpenHashMap();
+  private final ServerLevel serverLevel;
+
+  public SkyVisibilityCache(ServerLevel serverLevel) {
+    this.serverLevel = serverLevel;
+  }
+
+  private static long packColumn(int x, int z) {
+    return ChunkPos.asLong(x, z);
+  }
+
+  public int size() {
+    return this.columns.size();
+  }
+
+  public boolean canSeeSky(int x, int y, int z) {
+    return y >= getSkyHeight(x, z);
+  }
+
+  public int getSkyHeight(int x, int z) {
+    long columnKey = packColumn(x, z);
+    int gameTick = (int) this.serverLevel.getGameTime();
+    if (this.columns.containsKey(columnKey)) {
+      long column = this.columns.get(columnKey);
+      if (gameTick - (int) (column >>> 32) < MAX_AGE_TICKS) {
+        return (int) column;
+      }
+    } else if (this.columns.size() >= MAX_COLUMNS) {
+      this.columns.clear();
+    }
+
+    // The motion blocking height map covers solid blocks, leaves and fluids, so that everything
+    // at or above this height is in the open air.
+    int skyHeight = this.serverLevel.getHeight(Heightmap.Types.MOTION_BLOCKING, x, z);
+    this.columns.put(columnKey, ((long) gameTick << 32) | (skyHeight & 0xFFFFFFFFL));
+    return skyHeight;
+  }
+
+  public void invalidate(BlockPos blockPos) {
+    if (!this.columns.isEmpty()) {
+      this.columns.remove(packColumn(blockPos.getX(), blockPos.getZ()));
+    }
+  }
+
+  public void invalidateChunk(ChunkPos chunkPos) {
+    if (this.columns.isEmpty()) {
+      return;
+    }
+    int xStart = chunkPos.getMinBlockX();
+    int zStart = chunkPos.getMinBlockZ();
+    for (int x = xStart; x < xStart + 16; x++) {
+      for (int z = zStart; z < zStart + 16; z++) {
+        this.columns.remove(packColumn(x, z));
+      }
+    }
+  }
+
+  public void clear() {
+    this.columns.clear();
+  }
+}
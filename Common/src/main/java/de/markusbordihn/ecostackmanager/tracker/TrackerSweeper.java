@@ -0,0 +1,84 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.tracker;
+
+import de.markusbordihn.ecostackmanager.Constants;
+import de.markusbordihn.ecostackmanager.server.AdaptiveController;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class TrackerSweeper {
+
+  private static final Logger log = LogManager.getLogger(Constants.LOG_NAME);
+  private static final String LOG_PREFIX = "[Verification]";
+
+  private static long reclaimedItemEntities = 0;
+  private static long reclaimedExperienceOrbs = 0;
+
+  private TrackerSweeper() {}
+
+  public static void sweep() {
+    // Each level tracker is checked with a limited number of entries per tick, which continues
+    // from the last position on the next tick.
+    for (LevelTracker levelTracker : LevelTrackerManager.getLevelTrackers()) {
+      int removedItemEntities = 0;
+      int itemVerificationEntriesPerTick =
+          AdaptiveController.getItemVerificationEntriesPerTick(
+              levelTracker.getItemEntityConfig());
+      if (itemVerificationEntriesPerTick > 0) {
+        removedItemEntities =
+            levelTracker.getItemEntityTracker().sweep(itemVerificationEntriesPerTick);
+      }
+      int removedExperienceOrbs = 0;
+      int experienceOrbVerificationEntriesPerTick =
+          AdaptiveController.getExperienceOrbVerificationEntriesPerTick(
+              levelTracker.getExperienceOrbConfig());
+      if (experienceOrbVerificationEntriesPerTick > 0) {
+        removedExperienceOrbs =
+            levelTracker
+                .getExperienceOrbSectionIndex()
+                .sweep(experienceOrbVerificationEntriesPerTick);
+      }
+
+      if (removedItemEntities > 0 || removedExperienceOrbs > 0) {
+        reclaimedItemEntities += removedItemEntities;
+        reclaimedExperienceOrbs += removedExperienceOrbs;
+        if (log.isDebugEnabled()) {
+          log.debug(
+              "{} Reclaimed {} item entities and {} experience orbs in {} (total: {} / {})",
+              LOG_PREFIX,
+              removedItemEntities,
+              removedExperienceOrbs,
+              levelTracker.getServerLevel().dimension().location(),
+              reclaimedItemEntities,
+              reclaimedExperienceOrbs);
+        }
+      }
+    }
+  }
+
+  public static long getReclaimedItemEntities() {
+    return reclaimedItemEntities;
+  }
+
+  public static long getReclaimedExperienceOrbs() {
+    return reclaimedExperienceOrbs;
+  }
+}
@@ -19,29 +19,29 @@
 
 package de.markusbordihn.ecostackmanager.utils;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.lang.reflect.Field;
 
 public class ReflectionUtils {
 
   private ReflectionUtils() {}
 
-  public static boolean changeIntValueField(Object object, String[] fieldNames, int value) {
+  public static VarHandle findVarHandle(
+      Class<?> declaringClass, Class<?> fieldType, String... fieldNames) {
+    // The field names are covering the different mappings, like mojmap, intermediary and srg.
     for (String fieldName : fieldNames) {
-      if (changeIntValueField(object, fieldName, value)) {
-        return true;
+      try {
+        Field field = declaringClass.getDeclaredField(fieldName);
+        if (field.getType() != fieldType) {
+          continue;
+        }
+        field.setAccessible(true);
+        return MethodHandles.lookup().unreflectVarHandle(field);
+      } catch (NoSuchFieldException | IllegalAccessException | RuntimeException e) {
+        // Try the next field name.
       }
     }
-    return false;
-  }
-
-  public static boolean changeIntValueField(Object object, String fieldName, int value) {
-    try {
-      Field field = object.getClass().getDeclaredField(fieldName);
-      field.setAccessible(true);
-      field.setInt(object, value);
-      return true;
-    } catch (NoSuchFieldException | IllegalAccessException e) {
-      return false;
-    }
+    return null;
   }
 }
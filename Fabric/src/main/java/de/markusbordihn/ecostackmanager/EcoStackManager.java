@@ -23,7 +23,13 @@ import de.markusbordihn.ecostackmanager.commands.manager.CommandManager;
 import de.markusbordihn.ecostackmanager.config.Config;
 import de.markusbordihn.ecostackmanager.debug.DebugManager;
 import de.markusbordihn.ecostackmanager.entity.EntityWorldEvents;
+import de.markusbordihn.ecostackmanager.entity.ExperienceOrbManager;
+import de.markusbordihn.ecostackmanager.entity.ItemPolicyEvents;
+import de.markusbordihn.ecostackmanager.entity.SavedDataVirtualCountStorage;
+import de.markusbordihn.ecostackmanager.entity.VirtualItemStackManager;
 import de.markusbordihn.ecostackmanager.mods.AdditionalModsMessages;
+import de.markusbordihn.ecostackmanager.server.ServerTickEventHandler;
+import de.markusbordihn.ecostackmanager.tracker.LevelTrackerEvents;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.command.v1.CommandRegistrationCallback;
 import net.fabricmc.loader.impl.FabricLoaderImpl;
@@ -58,9 +64,24 @@ public class EcoStackManager implements ModInitializer {
         fabricLoader.isModLoaded(Constants.MOD_GET_IT_TOGETHER_DROPS_ID);
     AdditionalModsMessages.checkForIncompatibility();
 
+    log.info("{} Experience orb accessors ...", Constants.LOG_REGISTER_PREFIX);
+    ExperienceOrbManager.registerAccessors();
+
+    log.info("{} Virtual item stack storage ...", Constants.LOG_REGISTER_PREFIX);
+    VirtualItemStackManager.registerVirtualCountStorage(new SavedDataVirtualCountStorage());
+
     log.info("{} Entity events ...", Constants.LOG_REGISTER_PREFIX);
     EntityWorldEvents.register();
 
+    log.info("{} Item policy events ...", Constants.LOG_REGISTER_PREFIX);
+    ItemPolicyEvents.register();
+
+    log.info("{} Level tracker events ...", Constants.LOG_REGISTER_PREFIX);
+    LevelTrackerEvents.register();
+
+    log.info("{} Server tick events ...", Constants.LOG_REGISTER_PREFIX);
+    ServerTickEventHandler.register();
+
     log.info("{} Commands ...", Constants.LOG_REGISTER_PREFIX);
     CommandRegistrationCallback.EVENT.register(
         (dispatcher, dedicated) -> CommandManager.registerCommands(dispatcher));
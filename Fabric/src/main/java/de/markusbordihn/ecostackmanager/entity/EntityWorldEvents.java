@@ -28,6 +28,9 @@ import net.minecraft.world.entity.item.ItemEntity;
 
 public class EntityWorldEvents {
 
+  // Item entities are despawned by vanilla after 5 minutes.
+  private static final int ITEM_DESPAWN_AGE = 6000;
+
   private EntityWorldEvents() {}
 
   public static void register() {
@@ -51,6 +54,11 @@ public class EntityWorldEvents {
       ExperienceOrbManager.handleExperienceOrbLeaveWorldEvent(experienceOrb, serverLevel);
     } else if (entity instanceof ItemEntity itemEntity
         && !Constants.MOD_GET_IT_TOGETHER_DROPS_LOADED) {
+      // Fabric has no item expire event, so that despawned item entities are detected by their age.
+      if (itemEntity.getRemovalReason() == Entity.RemovalReason.DISCARDED
+          && itemEntity.getAge() >= ITEM_DESPAWN_AGE) {
+        VirtualItemStackManager.markDestroyed(itemEntity);
+      }
       ItemEntityManager.handleItemLeaveWorldEvent(itemEntity, serverLevel);
     }
   }
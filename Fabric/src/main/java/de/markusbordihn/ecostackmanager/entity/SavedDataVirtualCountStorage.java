@@ -0,0 +1,183 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.entity;
+
+import de.markusbordihn.ecostackmanager.Constants;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import java.util.Iterator;
+import java.util.UUID;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.level.saveddata.SavedData;
+
+public class SavedDataVirtualCountStorage implements VirtualCountStorage {
+
+  // Fabric has no persistent entity data, so that the virtual counts are stored by entity UUID
+  // within the saved data of the overworld. The UUID is kept on dimension changes, so that one
+  // storage is used for all dimensions.
+  private static final String DATA_NAME = Constants.MOD_ID + "_virtual_counts";
+
+  // Item entities could disappear without a leave event, e.g. by trimmed region files or a crash
+  // between two saves. Their virtual counts are pruned after 7 days of server time without being
+  // loaded.
+  private static final long MAX_UNSEEN_TICKS = 7L * 24 * 60 * 60 * 20;
+
+  @Override
+  public int load(final ItemEntity itemEntity) {
+    VirtualCountData virtualCountData = getVirtualCountData(itemEntity.getServer());
+    if (virtualCountData == null) {
+      return 0;
+    }
+    int virtualCount = virtualCountData.virtualCounts.getInt(itemEntity.getUUID());
+    if (virtualCount > 0) {
+      virtualCountData.markLoaded(itemEntity);
+    }
+    return virtualCount;
+  }
+
+  @Override
+  public void store(final ItemEntity itemEntity, final int virtualCount) {
+    VirtualCountData virtualCountData = getVirtualCountData(itemEntity.getServer());
+    if (virtualCountData == null) {
+      return;
+    }
+    if (virtualCount > 0) {
+      virtualCountData.virtualCounts.put(itemEntity.getUUID(), virtualCount);
+      virtualCountData.markLoaded(itemEntity);
+    } else if (virtualCountData.virtualCounts.containsKey(itemEntity.getUUID())) {
+      virtualCountData.virtualCounts.removeInt(itemEntity.getUUID());
+      virtualCountData.lastSeenTimes.removeLong(itemEntity.getUUID());
+      virtualCountData.loadedItemEntities.removeInt(itemEntity.getUUID());
+      virtualCountData.setDirty();
+    }
+  }
+
+  @Override
+  public void unload(final ItemEntity itemEntity) {
+    VirtualCountData virtualCountData = getVirtualCountData(itemEntity.getServer());
+    if (virtualCountData != null) {
+      virtualCountData.markUnloaded(itemEntity);
+    }
+  }
+
+  private static VirtualCountData getVirtualCountData(final MinecraftServer minecraftServer) {
+    if (minecraftServer == null) {
+      return null;
+    }
+    ServerLevel serverLevel = minecraftServer.overworld();
+    return serverLevel
+        .getDataStorage()
+        .computeIfAbsent(
+            compoundTag -> VirtualCountData.load(compoundTag, serverLevel),
+            () -> new VirtualCountData(serverLevel),
+            DATA_NAME);
+  }
+
+  private static class VirtualCountData extends SavedData {
+    private final ServerLevel serverLevel;
+    private final Object2IntMap<UUID> virtualCounts = new Object2IntOpenHashMap<>();
+    private final Object2LongMap<UUID> lastSeenTimes = new Object2LongOpenHashMap<>();
+
+    // Loaded item entities by UUID with their entity id, because an item entity which is changing
+    // the dimension joins the new level before the old item entity is removed.
+    private final Object2IntMap<UUID> loadedItemEntities = new Object2IntOpenHashMap<>();
+
+    private VirtualCountData(final ServerLevel serverLevel) {
+      this.serverLevel = serverLevel;
+    }
+
+    private void markLoaded(final ItemEntity itemEntity) {
+      this.loadedItemEntities.put(itemEntity.getUUID(), itemEntity.getId());
+      this.lastSeenTimes.put(itemEntity.getUUID(), this.serverLevel.getGameTime());
+      this.setDirty();
+    }
+
+    private void markUnloaded(final ItemEntity itemEntity) {
+      UUID uuid = itemEntity.getUUID();
+      if (!this.virtualCounts.containsKey(uuid)) {
+        return;
+      }
+      if (this.loadedItemEntities.getOrDefault(uuid, -1) == itemEntity.getId()) {
+        this.loadedItemEntities.removeInt(uuid);
+      }
+      this.lastSeenTimes.put(uuid, this.serverLevel.getGameTime());
+      this.setDirty();
+    }
+
+    private void prune() {
+      // Loaded item entities are seen right now, all other item entities are pruned if they were
+      // not loaded for too long.
+      long gameTime = this.serverLevel.getGameTime();
+      Iterator<UUID> iterator = this.virtualCounts.keySet().iterator();
+      while (iterator.hasNext()) {
+        UUID uuid = iterator.next();
+        if (this.loadedItemEntities.containsKey(uuid)) {
+          this.lastSeenTimes.put(uuid, gameTime);
+        } else if (gameTime - this.lastSeenTimes.getOrDefault(uuid, gameTime) > MAX_UNSEEN_TICKS) {
+          iterator.remove();
+          this.lastSeenTimes.removeLong(uuid);
+        }
+      }
+    }
+
+    private static VirtualCountData load(
+        final CompoundTag compoundTag, final ServerLevel serverLevel) {
+      VirtualCountData virtualCountData = new VirtualCountData(serverLevel);
+      ListTag listTag = compoundTag.getList("VirtualCounts", Tag.TAG_COMPOUND);
+      for (int i = 0; i < listTag.size(); i++) {
+        CompoundTag entryTag = listTag.getCompound(i);
+        int virtualCount = entryTag.getInt("Count");
+        if (entryTag.hasUUID("UUID") && virtualCount > 0) {
+          // Entries without a last seen time are starting to count from now on.
+          UUID uuid = entryTag.getUUID("UUID");
+          virtualCountData.virtualCounts.put(uuid, virtualCount);
+          virtualCountData.lastSeenTimes.put(
+              uuid,
+              entryTag.contains("LastSeen")
+                  ? entryTag.getLong("LastSeen")
+                  : serverLevel.getGameTime());
+        }
+      }
+      return virtualCountData;
+    }
+
+    @Override
+    public CompoundTag save(final CompoundTag compoundTag) {
+      prune();
+      ListTag listTag = new ListTag();
+      for (Object2IntMap.Entry<UUID> entry : this.virtualCounts.object2IntEntrySet()) {
+        CompoundTag entryTag = new CompoundTag();
+        entryTag.putUUID("UUID", entry.getKey());
+        entryTag.putInt("Count", entry.getIntValue());
+        entryTag.putLong("LastSeen", this.lastSeenTimes.getLong(entry.getKey()));
+        listTag.add(entryTag);
+      }
+      compoundTag.put("VirtualCounts", listTag);
+      return compoundTag;
+    }
+  }
+}
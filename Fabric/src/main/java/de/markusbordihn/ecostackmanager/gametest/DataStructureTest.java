@@ -0,0 +1,52 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.gametest;
+
+import net.minecraft.gametest.framework.GameTest;
+import net.minecraft.gametest.framework.GameTestHelper;
+
+@SuppressWarnings("unused")
+public class DataStructureTest {
+
+  @GameTest(template = "eco_stack_manager:gametest.3x3x3")
+  public void testRemergedItemEntityIsRemovedFromTypeQueue(GameTestHelper helper) {
+    ItemEntityTrackerTests.testRemergedItemEntityIsRemovedFromTypeQueue(helper);
+  }
+
+  @GameTest(template = "eco_stack_manager:gametest.3x3x3")
+  public void testConsolidatedItemEntityIsRemovedFromTypeQueue(GameTestHelper helper) {
+    ItemEntityTrackerTests.testConsolidatedItemEntityIsRemovedFromTypeQueue(helper);
+  }
+
+  @GameTest(template = "eco_stack_manager:gametest.3x3x3")
+  public void testHeapOrderAfterUpdateAndRemove(GameTestHelper helper) {
+    EvictionQueueTests.testHeapOrderAfterUpdateAndRemove(helper);
+  }
+
+  @GameTest(template = "eco_stack_manager:gametest.3x3x3")
+  public void testConnectivity(GameTestHelper helper) {
+    UnionFindTests.testConnectivity(helper);
+  }
+
+  @GameTest(template = "eco_stack_manager:gametest.3x3x3")
+  public void testBucketEdges(GameTestHelper helper) {
+    HistogramTests.testBucketEdges(helper);
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.tracker;
+
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerChunkEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.chunk.LevelChunk;
+
+public class LevelTrackerEvents {
+
+  private LevelTrackerEvents() {}
+
+  public static void register() {
+    // Fabric API has no block update event, so that cached sky visibility columns are only
+    // invalidated on chunk unload or after SkyVisibilityCache.MAX_AGE_TICKS.
+    ServerWorldEvents.LOAD.register(LevelTrackerEvents::handleLevelLoadEvent);
+    ServerWorldEvents.UNLOAD.register(LevelTrackerEvents::handleLevelUnloadEvent);
+    ServerChunkEvents.CHUNK_UNLOAD.register(LevelTrackerEvents::handleChunkUnloadEvent);
+    ServerLifecycleEvents.SERVER_STOPPED.register(LevelTrackerEvents::handleServerStoppedEvent);
+  }
+
+  public static void handleLevelLoadEvent(
+      final MinecraftServer minecraftServer, final ServerLevel serverLevel) {
+    LevelTrackerManager.handleLevelLoad(serverLevel);
+  }
+
+  public static void handleLevelUnloadEvent(
+      final MinecraftServer minecraftServer, final ServerLevel serverLevel) {
+    LevelTrackerManager.handleLevelUnload(serverLevel);
+  }
+
+  public static void handleChunkUnloadEvent(
+      final ServerLevel serverLevel, final LevelChunk levelChunk) {
+    LevelTrackerManager.handleChunkUnload(serverLevel, levelChunk.getPos());
+  }
+
+  public static void handleServerStoppedEvent(final MinecraftServer minecraftServer) {
+    LevelTrackerManager.handleServerStopped();
+  }
+}
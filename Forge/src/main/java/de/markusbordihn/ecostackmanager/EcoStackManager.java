@@ -23,6 +23,9 @@ import cpw.mods.modlauncher.Launcher;
 import cpw.mods.modlauncher.api.IEnvironment;
 import de.markusbordihn.ecostackmanager.config.Config;
 import de.markusbordihn.ecostackmanager.debug.DebugManager;
+import de.markusbordihn.ecostackmanager.entity.ExperienceOrbManager;
+import de.markusbordihn.ecostackmanager.entity.PersistentDataVirtualCountStorage;
+import de.markusbordihn.ecostackmanager.entity.VirtualItemStackManager;
 import de.markusbordihn.ecostackmanager.mods.AdditionalModsMessages;
 import java.util.Optional;
 import net.minecraftforge.fml.IExtensionPoint;
@@ -62,6 +65,12 @@ public class EcoStackManager {
         ModList.get().isLoaded(Constants.MOD_GET_IT_TOGETHER_DROPS_ID);
     AdditionalModsMessages.checkForIncompatibility();
 
+    log.info("{} Experience orb accessors ...", Constants.LOG_REGISTER_PREFIX);
+    ExperienceOrbManager.registerAccessors();
+
+    log.info("{} Virtual item stack storage ...", Constants.LOG_REGISTER_PREFIX);
+    VirtualItemStackManager.registerVirtualCountStorage(new PersistentDataVirtualCountStorage());
+
     // Make sure the mod being absent on the other network side does not cause the client to display
     // the server as incompatible
     ModLoadingContext.get()
@@ -25,6 +25,7 @@ import net.minecraft.world.entity.ExperienceOrb;
 import net.minecraft.world.entity.item.ItemEntity;
 import net.minecraftforge.event.entity.EntityJoinWorldEvent;
 import net.minecraftforge.event.entity.EntityLeaveWorldEvent;
+import net.minecraftforge.event.entity.item.ItemExpireEvent;
 import net.minecraftforge.eventbus.api.EventPriority;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
@@ -66,4 +67,13 @@ public class EntityWorldEvents {
       ItemEntityManager.handleItemLeaveWorldEvent(itemEntity, serverLevel);
     }
   }
+
+  @SubscribeEvent(priority = EventPriority.LOWEST)
+  public static void handleItemExpireEvent(final ItemExpireEvent event) {
+    // Canceled expire events are extending the lifespan instead of despawning the item entity.
+    if (event.isCanceled()) {
+      return;
+    }
+    VirtualItemStackManager.markDestroyed(event.getEntityItem());
+  }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.entity;
+
+import de.markusbordihn.ecostackmanager.Constants;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.entity.item.ItemEntity;
+
+public class PersistentDataVirtualCountStorage implements VirtualCountStorage {
+
+  // The persistent data is saved with the entity and copied on dimension changes by Forge.
+  private static final String VIRTUAL_COUNT_KEY = Constants.MOD_ID + ":virtual_count";
+
+  @Override
+  public int load(final ItemEntity itemEntity) {
+    return Math.max(0, itemEntity.getPersistentData().getInt(VIRTUAL_COUNT_KEY));
+  }
+
+  @Override
+  public void store(final ItemEntity itemEntity, final int virtualCount) {
+    CompoundTag persistentData = itemEntity.getPersistentData();
+    if (virtualCount > 0) {
+      persistentData.putInt(VIRTUAL_COUNT_KEY, virtualCount);
+    } else {
+      persistentData.remove(VIRTUAL_COUNT_KEY);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024 Markus Bordihn
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.markusbordihn.ecostackmanager.tracker;
+
+import net.minecraft.server.level.ServerLevel;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.event.world.BlockEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
+
+@SuppressWarnings("unused")
+@EventBusSubscriber
+public class LevelTrackerEvents {
+
+  private LevelTrackerEvents() {}
+
+  @SubscribeEvent
+  public static void handleLevelLoadEvent(final WorldEvent.Load event) {
+    if (event.getWorld() instanceof ServerLevel serverLevel) {
+      LevelTrackerManager.handleLevelLoad(serverLevel);
+    }
+  }
+
+  @SubscribeEvent
+  public static void handleLevelUnloadEvent(final WorldEvent.Unload event) {
+    if (event.getWorld() instanceof ServerLevel serverLevel) {
+      LevelTrackerManager.handleLevelUnload(serverLevel);
+    }
+  }
+
+  @SubscribeEvent
+  public static void handleChunkUnloadEvent(final ChunkEvent.Unload event) {
+    if (event.getWorld() instanceof ServerLevel serverLevel) {
+      LevelTrackerManager.handleChunkUnload(serverLevel, event.getChunk().getPos());
+    }
+  }
+
+  @SubscribeEvent
+  public static void handleBlockUpdateEvent(final BlockEvent.NeighborNotifyEvent event) {
+    if (event.getWorld() instanceof ServerLevel serverLevel) {
+      LevelTrackerManager.handleBlockUpdate(serverLevel, event.getPos());
+    }
+  }
+
+  @SubscribeEvent
+  public static void handleServerStoppedEvent(final ServerStoppedEvent event) {
+    LevelTrackerManager.handleServerStopped();
+  }
+}